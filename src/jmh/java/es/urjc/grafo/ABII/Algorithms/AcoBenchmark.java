@@ -0,0 +1,74 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.BenchmarkInstances;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.NeighbourLists;
+import es.urjc.grafo.ABII.Model.Solution;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route construction of a single ant and a full ACO iteration (every ant builds a route, then the
+ * pheromones are updated), with the parameters used by {@link Algorithm1#run}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AcoBenchmark {
+
+    @Param({"instancia_02", "instancia_04", "instancia_06", "generated-500"})
+    public String instanceName;
+
+    // Threads used to build the ants' routes in the iteration benchmark
+    @Param({"1"})
+    public int parallelism;
+
+    private Instance instance;
+    private Algorithm1 algorithm;
+    private Algorithm1.AntColony colony;
+    private Algorithm1.Ant ant;
+    private double[] choiceMatrix;
+    private NeighbourLists candidates;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.instance = BenchmarkInstances.load(this.instanceName);
+        this.algorithm = new Algorithm1(this.parallelism, 42);
+        this.algorithm.initializePheromones(this.instance.getNumberOfCustomers());
+        this.algorithm.initializeChoiceMatrix(this.instance, 0.2, 1.0);
+        SplittableRandom random = new SplittableRandom(42);
+        this.colony = new Algorithm1.AntColony(this.instance, 40, random);
+        this.ant = new Algorithm1.Ant(this.instance, random.split());
+        this.choiceMatrix = BenchmarkSolutions.initialChoiceMatrix(this.instance);
+        this.candidates = this.instance.getNearestCustomers(BenchmarkSolutions.CANDIDATES);
+        this.executor = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public double buildAntRoute() {
+        this.ant.buildAntRoute(this.choiceMatrix, this.candidates);
+        double cost = this.ant.getCost();
+        this.ant.resetAnt();
+        return cost;
+    }
+
+    @Benchmark
+    public Solution iteration() {
+        return this.algorithm.iterate(this.colony, this.instance, this.candidates, null, 0.2, 0.9, 1.0, this.executor);
+    }
+}
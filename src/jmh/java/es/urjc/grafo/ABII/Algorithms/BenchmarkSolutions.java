@@ -0,0 +1,43 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+
+import java.util.SplittableRandom;
+
+/**
+ * Solutions used by the benchmarks, built by a single seeded ant on the initial pheromones so that
+ * they are cheap to build even on large generated instances.
+ */
+public final class BenchmarkSolutions {
+
+    // Size of the candidate lists used by Algorithm1
+    static final int CANDIDATES = 20;
+
+    private BenchmarkSolutions() {
+    }
+
+    // This method returns the first feasible solution built by ants seeded from "seed"
+    public static Solution antSolution(Instance instance, long seed) {
+        double[] choiceMatrix = initialChoiceMatrix(instance);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Algorithm1.Ant ant = new Algorithm1.Ant(instance, random.split());
+            ant.buildAntRoute(choiceMatrix, instance.getNearestCustomers(CANDIDATES));
+            Solution solution = ant.getAntSolution();
+            if (Evaluator.isFeasible(solution, instance)) {
+                return solution;
+            }
+        }
+        throw new IllegalStateException("No feasible ant solution found for the benchmark");
+    }
+
+    // This method returns the choice matrix the ACO starts with
+    static double[] initialChoiceMatrix(Instance instance) {
+        Algorithm1 algorithm = new Algorithm1(1, 0);
+        algorithm.initializePheromones(instance.getNumberOfCustomers());
+        algorithm.initializeChoiceMatrix(instance, 0.2, 1.0);
+        return algorithm.getChoiceMatrix();
+    }
+}
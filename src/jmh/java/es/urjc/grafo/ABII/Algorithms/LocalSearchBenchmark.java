@@ -0,0 +1,46 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.BenchmarkInstances;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.PackedSolution;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local search from a raw ant solution down to a local optimum, with every move enabled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalSearchBenchmark {
+
+    @Param({"instancia_02", "instancia_04", "instancia_06", "generated-500"})
+    public String instanceName;
+
+    private LocalSearch localSearch;
+    private PackedSolution solution;
+    private PackedSolution working;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Instance instance = BenchmarkInstances.load(this.instanceName);
+        this.localSearch = new LocalSearch(instance);
+        this.solution = PackedSolution.of(BenchmarkSolutions.antSolution(instance, 42));
+    }
+
+    // Every invocation starts again from the raw ant solution
+    @Setup(Level.Invocation)
+    public void copySolution() {
+        this.working = this.solution.copy();
+    }
+
+    @Benchmark
+    public PackedSolution improve() {
+        this.localSearch.improve(this.working);
+        return this.working;
+    }
+}
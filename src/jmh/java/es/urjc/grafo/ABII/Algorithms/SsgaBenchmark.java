@@ -0,0 +1,86 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.BenchmarkInstances;
+import es.urjc.grafo.ABII.Model.Instance;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crossover of two individuals, decoding of a single one and a full SSGA generation (one offspring per pair of
+ * consecutive individuals, replacing the worst one), with the rates used by {@link Algorithm2#run}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SsgaBenchmark {
+
+    @Param({"instancia_02", "instancia_04", "instancia_06", "generated-500"})
+    public String instanceName;
+
+    // Smaller than the 800 individuals of a real run, so that large instances can be set up quickly
+    @Param({"100"})
+    public int populationSize;
+
+    // Threads used to generate the offspring in the generation benchmark
+    @Param({"1"})
+    public int parallelism;
+
+    private Instance instance;
+    private Algorithm2.Population population;
+    private Algorithm2.Individual decoded;
+    private List<Integer> customers;
+    private SplittableRandom random;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.instance = BenchmarkInstances.load(this.instanceName);
+        this.random = new SplittableRandom(42);
+        this.population = new Algorithm2.Population(this.instance, this.populationSize, this.random);
+        this.customers = this.population.get(0).getCustomers();
+        this.decoded = new Algorithm2.Individual(this.instance, this.customers);
+        this.executor = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public Algorithm2.Population partiallyMappedX() {
+        // Always a crossover of the first two individuals, never mutated
+        this.population.breed(0, 0.0, 1.0, this.random);
+        return this.population;
+    }
+
+    @Benchmark
+    public Algorithm2.Individual fromCustomers() {
+        this.decoded.reset();
+        this.decoded.fromCustomers(this.customers);
+        return this.decoded;
+    }
+
+    @Benchmark
+    public Algorithm2.Individual decode() {
+        this.decoded.reset();
+        this.decoded.decode(this.customers);
+        return this.decoded;
+    }
+
+    @Benchmark
+    public Algorithm2.Population generation() {
+        Algorithm2.generation(this.population, this.random, 0.13, 0.24, this.executor, null);
+        return this.population;
+    }
+}
@@ -0,0 +1,69 @@
+package es.urjc.grafo.ABII.Model;
+
+import java.util.SplittableRandom;
+
+/**
+ * Instances used by the benchmarks: the bundled ones ("instancia_02", "instancia_04", "instancia_06") and
+ * generated ones named "generated-<customers>" (e.g. "generated-1000"), built from a fixed seed so that
+ * every run measures the same instance.
+ */
+public final class BenchmarkInstances {
+
+    private static final String INSTANCES_PATH = "src/main/resources/instances/";
+    private static final long SEED = 20240501L;
+
+    private BenchmarkInstances() {
+    }
+
+    public static Instance load(String name) {
+        if (name.startsWith("generated-")) {
+            return generate(Integer.parseInt(name.substring("generated-".length())), SEED);
+        }
+        return new Instance(INSTANCES_PATH + name + ".txt");
+    }
+
+    /**
+     * Generates an instance with "customers" customers (the base included) spread uniformly over a 100 x 100
+     * square, the base at its centre and the charge stations on a regular grid. The battery always lasts for
+     * a leg between any two nodes followed by a leg to the closest charge station, and there are enough
+     * vehicles for the greedy constructions of both algorithms to serve every customer.
+     */
+    public static Instance generate(int customers, long seed) {
+        if (customers < 3) {
+            throw new IllegalArgumentException("An instance needs at least 3 customers: " + customers);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int grid = Math.max(2, (int) Math.ceil(Math.sqrt(customers / 8.0)));
+        int nodes = customers + grid * grid;
+        double[] coordinates = new double[2 * (nodes + 1)];
+        double[] demand = new double[nodes + 1];
+        boolean[] chargeStation = new boolean[nodes + 1];
+
+        coordinates[2] = 50;
+        coordinates[3] = 50;
+        chargeStation[1] = true;
+        double totalDemand = 0;
+        for (int id = 2; id <= customers; id++) {
+            coordinates[2 * id] = random.nextInt(101);
+            coordinates[2 * id + 1] = random.nextInt(101);
+            demand[id] = random.nextInt(1, 21);
+            totalDemand += demand[id];
+        }
+        double cell = 100.0 / grid;
+        for (int i = 0, id = customers + 1; i < grid; i++) {
+            for (int j = 0; j < grid; j++, id++) {
+                coordinates[2 * id] = (i + 0.5) * cell;
+                coordinates[2 * id + 1] = (j + 0.5) * cell;
+                chargeStation[id] = true;
+            }
+        }
+
+        double capacity = 200;
+        int vehicles = (int) Math.ceil(1.3 * totalDemand / capacity) + 1;
+        double h = 1.2;
+        double battery = h * (100 * Math.sqrt(2) + cell);
+        Instance.Data data = new Instance.Data(Double.NaN, vehicles, customers, nodes, capacity, battery, h,
+                coordinates, demand, chargeStation, null, null, null);
+        return new Instance(data, Instance.DEFAULT_MATRIX_NODE_LIMIT);
+    }
+}
@@ -0,0 +1,52 @@
+package es.urjc.grafo.ABII.Model;
+
+import es.urjc.grafo.ABII.Algorithms.BenchmarkSolutions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation and feasibility check of a complete solution, built once per trial by a seeded ant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+    @Param({"instancia_02", "instancia_04", "instancia_06", "generated-1000"})
+    public String instanceName;
+
+    private Instance instance;
+    private Solution solution;
+    private PackedSolution packedSolution;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.instance = BenchmarkInstances.load(this.instanceName);
+        this.solution = BenchmarkSolutions.antSolution(this.instance, 42);
+        this.packedSolution = PackedSolution.of(this.solution);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return Evaluator.evaluate(this.solution, this.instance);
+    }
+
+    @Benchmark
+    public double evaluatePacked() {
+        return Evaluator.evaluate(this.packedSolution, this.instance);
+    }
+
+    @Benchmark
+    public boolean isFeasible() {
+        return Evaluator.isFeasible(this.solution, this.instance);
+    }
+
+    @Benchmark
+    public boolean isFeasiblePacked() {
+        return Evaluator.isFeasible(this.packedSolution, this.instance);
+    }
+}
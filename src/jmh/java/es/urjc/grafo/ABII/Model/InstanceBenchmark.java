@@ -0,0 +1,58 @@
+package es.urjc.grafo.ABII.Model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance and charge station lookups, measured over a fixed sequence of random node pairs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstanceBenchmark {
+
+    private static final int PAIRS = 1024;
+
+    @Param({"instancia_02", "instancia_04", "instancia_06", "generated-1000", "generated-4000"})
+    public String instanceName;
+
+    private Instance instance;
+    private int[] from;
+    private int[] to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.instance = BenchmarkInstances.load(this.instanceName);
+        SplittableRandom random = new SplittableRandom(1);
+        this.from = new int[PAIRS];
+        this.to = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            this.from[i] = random.nextInt(1, this.instance.getNumberOfNodes() + 1);
+            this.to[i] = random.nextInt(1, this.instance.getNumberOfNodes() + 1);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public double getDistance() {
+        double sum = 0;
+        for (int i = 0; i < PAIRS; i++) {
+            sum += this.instance.getDistance(this.from[i], this.to[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getClosestChargeStation(Blackhole blackhole) {
+        for (int i = 0; i < PAIRS; i++) {
+            blackhole.consume(this.instance.getClosestChargeStation(this.from[i]));
+        }
+    }
+}
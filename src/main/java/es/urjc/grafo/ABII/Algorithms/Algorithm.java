@@ -4,5 +4,17 @@ import es.urjc.grafo.ABII.Model.Instance;
 import es.urjc.grafo.ABII.Model.Solution;
 
 public interface Algorithm {
+    // Runs the algorithm with its default stop condition
     public Solution run(Instance instance);
+
+    // Runs the algorithm until "stopCondition" is met, returning the best solution found
+    public default Solution run(Instance instance, StopCondition stopCondition) {
+        return this.run(instance, stopCondition, SolutionListener.NONE);
+    }
+
+    // Same as above, notifying "listener" of every new best solution as soon as it is found. Algorithms
+    // that only implement "run(Instance)" do not support stop conditions
+    public default Solution run(Instance instance, StopCondition stopCondition, SolutionListener listener) {
+        throw new UnsupportedOperationException(this.getClass().getName() + " does not support stop conditions");
+    }
 }
@@ -2,24 +2,113 @@ package es.urjc.grafo.ABII.Algorithms;
 
 import es.urjc.grafo.ABII.Model.Evaluator;
 import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.NeighbourLists;
+import es.urjc.grafo.ABII.Model.PackedSolution;
 import es.urjc.grafo.ABII.Model.Solution;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.random.RandomGenerator;
 
 public class Algorithm1 implements Algorithm {
-    // Matrix of doubles that stores the values of the pheromones
+    // How the pheromones evaporate, both giving the same pheromone values
+    public enum Evaporation {
+        // Every cell of the pheromone matrix is multiplied by "rho" on every iteration (O(n^2))
+        EAGER,
+        // A global scale factor is multiplied by "rho" instead (O(1)), and deposits are divided by it
+        LAZY
+    }
+
+    // Which ants deposit pheromone
+    public enum Variant {
+        // Every ant deposits "q / quality"
+        ANT_SYSTEM,
+        // MAX-MIN Ant System: only the best ant deposits, the pheromones are kept within [tauMin, tauMax]
+        // and reinitialized when the colony stagnates. It always evaporates eagerly, as the lower bound
+        // has to be applied to every cell
+        MAX_MIN
+    }
+
+    // The pheromone matrix is renormalized when its scale factor falls below this value
+    private static final double MIN_PHEROMONE_SCALE = 1e-100;
+    // MAX-MIN: probability of building the best solution once converged, which sets tauMin
+    private static final double P_BEST = 0.05;
+    // MAX-MIN: the global-best ant deposits every this many iterations, the iteration-best one otherwise
+    private static final int GLOBAL_BEST_PERIOD = 5;
+    // MAX-MIN: lambda of the lambda-branching factor, and the factor below which the pheromones are reset
+    private static final double BRANCHING_LAMBDA = 0.05;
+    private static final double BRANCHING_RESTART = 1.1;
+
+    // Matrix of doubles that stores the values of the pheromones, divided by "pheromoneScale"
     private double[][] pheromoneMatrix;
+    // Factor by which the stored pheromones are multiplied (always 1 with eager evaporation)
+    private double pheromoneScale;
+    // MAX-MIN pheromone bounds (0 until the first solution sets them) and iterations run
+    private double tauMin;
+    private double tauMax;
+    private int iteration;
+    // Local search applied to the best ant of every iteration (null if disabled)
+    private LocalSearch localSearch;
+    // (1 / distance)^beta between every pair of customers, "i" and "j" at position (i - 1) * n + (j - 1)
+    private double[] heuristicMatrix;
+    // tau^alpha * eta^beta between every pair of customers, laid out like "heuristicMatrix" and kept up to
+    // date on every pheromone update, so that the ants do not compute any power. It is computed from the
+    // stored pheromones: the scale factor multiplies every cell alike, so it never changes the choice
+    private double[] choiceMatrix;
+    // Number of threads used to build the ants' routes (1 builds them sequentially)
+    private final int parallelism;
+    // Seed of the master random generator, from which every ant gets its own generator
+    private final long seed;
+    // Name of the random generator algorithm (see java.util.random.RandomGeneratorFactory)
+    private final String randomAlgorithm;
+    private final Evaporation evaporation;
+    private final Variant variant;
+
+    // Runs sequentially with a random seed (the constructors below opt into a parallel run)
+    public Algorithm1() {
+        this(1, ThreadLocalRandom.current().nextLong());
+    }
+
+    // The result only depends on "seed", whatever the value of "parallelism"
+    public Algorithm1(int parallelism, long seed) {
+        this(parallelism, seed, RandomSource.DEFAULT_ALGORITHM);
+    }
+
+    // "randomAlgorithm" must name a splittable generator, such as "L64X128MixRandom"
+    public Algorithm1(int parallelism, long seed, String randomAlgorithm) {
+        this(parallelism, seed, randomAlgorithm, Evaporation.LAZY);
+    }
+
+    public Algorithm1(int parallelism, long seed, String randomAlgorithm, Evaporation evaporation) {
+        this(parallelism, seed, randomAlgorithm, evaporation, Variant.ANT_SYSTEM);
+    }
+
+    public Algorithm1(int parallelism, long seed, String randomAlgorithm, Evaporation evaporation, Variant variant) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        this.seed = seed;
+        this.randomAlgorithm = RandomSource.requireSplittable(randomAlgorithm);
+        this.evaporation = Objects.requireNonNull(evaporation);
+        this.variant = Objects.requireNonNull(variant);
+    }
 
     // This method is used to run the algorithm
     public Solution run(Instance instance) {
+        // Set the maximum number of iterations for the algorithm
+        return this.run(instance, StopCondition.iterations(100));
+    }
+
+    // This method runs the algorithm until "stopCondition" is met, notifying "listener" of every new best solution
+    public Solution run(Instance instance, StopCondition stopCondition, SolutionListener listener) {
         // -------- Timer -------- //
         Instant t0 = Instant.now();
+        StopCondition.Tracker tracker = stopCondition.start(instance);
 
         // -------- Parameters section -------- //
-        // Set the maximum number of iterations for the algorithm
-        int maxIter = 100;
         // Set the number of ants
         int numAnts = 40;
         // Set the value for alpha
@@ -30,30 +119,44 @@ public class Algorithm1 implements Algorithm {
         double rho = 0.9;
         // Set the value for Q
         double q = 1.0;
+        // Set the number of nearest customers considered first on every step
+        int numCandidates = 20;
+        // Whether the best ant of every iteration is improved with a local search
+        boolean applyLocalSearch = true;
 
         // -------- Initialize section -------- //
         // Generate a colony of "numAnts" ants
-        AntColony colony = new AntColony(instance, numAnts);
+        AntColony colony = new AntColony(instance, numAnts, RandomSource.create(this.randomAlgorithm, this.seed));
         // Initialize the best solution to null
         Solution bestSolution = null;
         // Initialize the pheromone matrix
         this.initializePheromones(instance.getNumberOfCustomers());
+        this.initializeChoiceMatrix(instance, alpha, beta);
+        // Get the candidate lists
+        NeighbourLists candidates = instance.getNearestCustomers(numCandidates);
+        this.localSearch = applyLocalSearch ? new LocalSearch(instance) : null;
+        // Ants only read the pheromone matrix while building their routes, so they can do it in parallel
+        ExecutorService executor = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
 
         // -------- Main loop -------- //
-        for (int i = 0; i < maxIter; i++) {
-            // For each ant in "colony"...
-            for (Ant ant : colony) {
-                // Build a route
-                ant.buildAntRoute(this.pheromoneMatrix, alpha, beta);
+        try {
+            // At least one iteration, so that there is a solution to return
+            do {
+                bestSolution = this.iterate(colony, instance, candidates, bestSolution, alpha, rho, q, executor);
+                tracker.addEvaluations(numAnts);
+                double bestCost = Evaluator.evaluate(bestSolution, instance);
+                if (tracker.iterationDone(bestCost)) {
+                    listener.onImprovement(new SolutionListener.Improvement(bestSolution, bestCost,
+                            Evaluator.isFeasible(bestSolution, instance), tracker.getElapsed(), tracker.getIterations()));
+                }
+            } while (!tracker.isDone());
+        } catch (CancellationException e) {
+            // Interrupted in the middle of an iteration, the best solution of the previous ones is returned
+            if (bestSolution == null || !Thread.currentThread().isInterrupted()) throw e;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
             }
-            // Update pheromone matrix
-            this.updatePheromones(rho, q, colony, instance);
-
-            // Update best solution
-            bestSolution = this.updateBestSolution(bestSolution, colony, instance);
-
-            // Reset ant colony
-            colony.resetAnts();
         }
 
         // Print out the algorithm's execution time
@@ -64,10 +167,48 @@ public class Algorithm1 implements Algorithm {
         return bestSolution;
     }
 
+    // This method runs one iteration of the algorithm and returns the best solution found so far
+    Solution iterate(AntColony colony, Instance instance, NeighbourLists candidates, Solution bestSolution,
+                     double alpha, double rho, double q, ExecutorService executor) {
+        // Every ant in "colony" builds a route
+        colony.buildAntRoutes(this.choiceMatrix, candidates, executor);
+
+        // Update best solution
+        Solution previousBest = bestSolution;
+        bestSolution = this.updateBestSolution(bestSolution, colony, instance);
+        if (this.localSearch != null) {
+            Ant iterationBest = this.getIterationBest(colony, instance);
+            if (iterationBest != null) {
+                // The ant's routes are reused, so the local search improves a copy of them
+                PackedSolution improved = iterationBest.getPackedSolution().copy();
+                if (this.localSearch.improve(improved)
+                        && Evaluator.evaluate(improved, instance) < Evaluator.evaluate(bestSolution, instance)) {
+                    bestSolution = improved.toSolution();
+                }
+            }
+        }
+
+        // Update pheromone matrix
+        if (this.variant == Variant.MAX_MIN) {
+            this.updatePheromonesMaxMin(alpha, rho, q, colony, instance, bestSolution, bestSolution != previousBest);
+        } else {
+            this.updatePheromones(alpha, rho, q, colony, instance);
+        }
+        this.iteration++;
+
+        // Reset ant colony
+        colony.resetAnts();
+        return bestSolution;
+    }
+
     // This method initializes the pheromone matrix
-    private void initializePheromones(int numNodes) {
+    void initializePheromones(int numNodes) {
         double initValue = 1.0;
         this.pheromoneMatrix = new double[numNodes][numNodes];
+        this.pheromoneScale = 1.0;
+        this.tauMin = 0;
+        this.tauMax = 0;
+        this.iteration = 0;
         for (int i = 0; i < numNodes; i++) {
             for (int j = 0; j < numNodes; j++) {
                 // Initialize every position to 1.0
@@ -76,51 +217,226 @@ public class Algorithm1 implements Algorithm {
         }
     }
 
-    // This method updates the values in the pheromone matrix
-    private void updatePheromones(double rho, double q, AntColony colony, Instance instance) {
+    // This method computes the heuristic matrix and the choice matrix of the initial pheromones
+    void initializeChoiceMatrix(Instance instance, double alpha, double beta) {
+        int n = instance.getNumberOfCustomers();
+        this.heuristicMatrix = new double[n * n];
+        this.choiceMatrix = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                this.heuristicMatrix[i * n + j] = Math.pow(1 / instance.getDistance(i + 1, j + 1), beta);
+            }
+        }
+        this.updateChoiceMatrix(alpha);
+    }
+
+    // This method recomputes the choice matrix from the current pheromones
+    private void updateChoiceMatrix(double alpha) {
+        int n = this.pheromoneMatrix.length;
+        for (int i = 0; i < n; i++) {
+            double[] row = this.pheromoneMatrix[i];
+            int offset = i * n;
+            for (int j = 0; j < n; j++) {
+                double tau = alpha == 1.0 ? row[j] : Math.pow(row[j], alpha);
+                this.choiceMatrix[offset + j] = tau * this.heuristicMatrix[offset + j];
+            }
+        }
+    }
+
+    double[] getChoiceMatrix() {
+        return choiceMatrix;
+    }
+
+    // Pheromone on the edge from customer "i" to customer "j"
+    double getPheromone(int i, int j) {
+        return this.pheromoneScale * this.pheromoneMatrix[i - 1][j - 1];
+    }
+
+    // This method updates the values in the pheromone matrix, and the choice matrix with them
+    private void updatePheromones(double alpha, double rho, double q, AntColony colony, Instance instance) {
         // First, we multiply by the evaporation factor "rho"
-        for (int i = 0; i < this.pheromoneMatrix.length; i++) {
-            for (int j = 0; j < this.pheromoneMatrix.length; j++) {
-                this.pheromoneMatrix[i][j] *= rho;
+        boolean lazy = this.evaporation == Evaporation.LAZY;
+        if (lazy) {
+            this.pheromoneScale *= rho;
+            if (this.pheromoneScale < MIN_PHEROMONE_SCALE) {
+                this.renormalizePheromones(alpha);
+            }
+        } else {
+            for (int i = 0; i < this.pheromoneMatrix.length; i++) {
+                for (int j = 0; j < this.pheromoneMatrix.length; j++) {
+                    this.pheromoneMatrix[i][j] *= rho;
+                }
             }
         }
 
         // Then, we add the pheromone quantity
+        int n = this.pheromoneMatrix.length;
         for (Ant ant : colony) {
-            double quality = Evaluator.evaluate(ant.getAntSolution(), instance);
-            Solution antSolution = ant.getAntSolution();
-            for (List<Integer> route : antSolution.routes()) {
-                for (int i = 0; i < route.size() - 1; i++) {
-                    int customerI = route.get(i);
-                    int customerJ = route.get(i + 1);
+            PackedSolution antSolution = ant.getPackedSolution();
+            double quality = ant.getCost();
+            double deposit = (q / quality) / this.pheromoneScale;
+            int[] tour = antSolution.tour();
+            for (int r = 0; r < antSolution.getNumberOfRoutes(); r++) {
+                for (int i = antSolution.routeStart(r); i < antSolution.routeEnd(r) - 1; i++) {
+                    int customerI = tour[i];
+                    int customerJ = tour[i + 1];
                     if ((customerI == 1 || !instance.isChargeStation(customerI)) && (customerJ == 1 || !instance.isChargeStation(customerJ))) {
-                        this.pheromoneMatrix[customerI - 1][customerJ - 1] += (q / quality);
+                        double tau = this.pheromoneMatrix[customerI - 1][customerJ - 1] += deposit;
+                        if (lazy) {
+                            // Only the deposited cells change
+                            int cell = (customerI - 1) * n + (customerJ - 1);
+                            this.choiceMatrix[cell] = (alpha == 1.0 ? tau : Math.pow(tau, alpha)) * this.heuristicMatrix[cell];
+                        }
                     }
                 }
             }
         }
+        if (!lazy) {
+            this.updateChoiceMatrix(alpha);
+        }
+    }
+
+    // This method updates the pheromones as the MAX-MIN Ant System does, "bestSolution" being the global best
+    private void updatePheromonesMaxMin(double alpha, double rho, double q, AntColony colony, Instance instance,
+                                        Solution bestSolution, boolean improved) {
+        // The bounds follow the global best, and the first ones reset every cell to tauMax
+        if (improved) {
+            boolean first = this.tauMax == 0;
+            this.updatePheromoneBounds(rho, q, Evaluator.evaluate(bestSolution, instance));
+            if (first) {
+                this.resetPheromones(this.tauMax);
+            }
+        }
+
+        // Evaporate, keeping every cell above tauMin
+        for (double[] row : this.pheromoneMatrix) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] = Math.max(this.tauMin, row[j] * rho);
+            }
+        }
+
+        // Only the global-best or the iteration-best ant deposits, keeping every cell below tauMax
+        PackedSolution depositing;
+        if (this.iteration % GLOBAL_BEST_PERIOD == 0) {
+            depositing = PackedSolution.of(bestSolution);
+        } else {
+            Ant best = null;
+            for (Ant ant : colony) {
+                if (best == null || ant.getCost() < best.getCost()) {
+                    best = ant;
+                }
+            }
+            depositing = best.getPackedSolution();
+        }
+        double deposit = q / Evaluator.evaluate(depositing, instance);
+        int[] tour = depositing.tour();
+        for (int r = 0; r < depositing.getNumberOfRoutes(); r++) {
+            for (int i = depositing.routeStart(r); i < depositing.routeEnd(r) - 1; i++) {
+                int customerI = tour[i];
+                int customerJ = tour[i + 1];
+                if ((customerI == 1 || !instance.isChargeStation(customerI)) && (customerJ == 1 || !instance.isChargeStation(customerJ))) {
+                    double[] row = this.pheromoneMatrix[customerI - 1];
+                    row[customerJ - 1] = Math.min(this.tauMax, row[customerJ - 1] + deposit);
+                }
+            }
+        }
+
+        // Start again from tauMax when the colony has converged
+        if (this.getBranchingFactor() < BRANCHING_RESTART) {
+            this.resetPheromones(this.tauMax);
+        }
+        this.updateChoiceMatrix(alpha);
+    }
+
+    // This method sets the MAX-MIN bounds from the cost of the best solution found so far
+    private void updatePheromoneBounds(double rho, double q, double bestCost) {
+        int n = this.pheromoneMatrix.length;
+        this.tauMax = q / ((1 - rho) * bestCost);
+        double pDec = Math.pow(P_BEST, 1.0 / n);
+        this.tauMin = Math.min(this.tauMax, this.tauMax * (1 - pDec) / ((n / 2.0 - 1) * pDec));
+    }
+
+    private void resetPheromones(double value) {
+        for (double[] row : this.pheromoneMatrix) {
+            Arrays.fill(row, value);
+        }
+        this.pheromoneScale = 1.0;
+    }
+
+    // Average lambda-branching factor: the number of edges leaving each customer (the base, left once per
+    // vehicle, excluded) whose pheromone is at least tauMin + lambda * (tauMax - tauMin). It falls to 1 or
+    // below as the colony converges on a single solution
+    double getBranchingFactor() {
+        int n = this.pheromoneMatrix.length;
+        double threshold = this.tauMin + BRANCHING_LAMBDA * (this.tauMax - this.tauMin);
+        double branches = 0;
+        for (int i = 1; i < n; i++) {
+            double[] row = this.pheromoneMatrix[i];
+            for (int j = 0; j < n; j++) {
+                if (j != i && row[j] >= threshold) branches++;
+            }
+        }
+        return n > 1 ? branches / (n - 1) : Double.POSITIVE_INFINITY;
+    }
+
+    // This method folds the scale factor into the stored pheromones, before it underflows
+    private void renormalizePheromones(double alpha) {
+        for (double[] row : this.pheromoneMatrix) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] *= this.pheromoneScale;
+            }
+        }
+        this.pheromoneScale = 1.0;
+        this.updateChoiceMatrix(alpha);
     }
 
-    // This method updates the best solution found by the algorithm
+    // This method updates the best solution found by the algorithm, copying the routes of the best ant
+    // only if it improves it
     private Solution updateBestSolution(Solution bestSolution, AntColony colony, Instance instance) {
+        double bestCost = bestSolution == null ? Double.POSITIVE_INFINITY : Evaluator.evaluate(bestSolution, instance);
+        Ant best = null;
         for (Ant ant : colony) {
-            Solution antSolution = ant.getAntSolution();
-            if (Evaluator.isBetter(antSolution, bestSolution, instance)) {
-                bestSolution = antSolution;
+            if (ant.getCost() < bestCost) {
+                bestCost = ant.getCost();
+                best = ant;
             }
         }
-        return bestSolution;
+        return best == null ? bestSolution : best.getAntSolution();
     }
 
-    // This class represents each ant
-    private static class Ant {
+    // This method returns the ant that built the best feasible solution in this iteration (null if there is none)
+    private Ant getIterationBest(AntColony colony, Instance instance) {
+        Ant iterationBest = null;
+        for (Ant ant : colony) {
+            if ((iterationBest == null || ant.getCost() < iterationBest.getCost())
+                    && Evaluator.isFeasible(ant.getPackedSolution(), instance)) {
+                iterationBest = ant;
+            }
+        }
+        return iterationBest;
+    }
+
+    // This class represents each ant. Its buffers are allocated once and cleared in place by "resetAnt", and
+    // its routes are written one after another into a packed solution, so building routes allocates nothing
+    static class Ant {
         private final Instance instance;
+        private final RandomGenerator random;
         private int currentCustomer;
-        private boolean[] visited;
-        private Vehicle[] vehicles;
-
-        private Ant(Instance instance) {
+        private final boolean[] visited;
+        // Number of nodes in "visited" that are not visited yet
+        private int unvisited;
+        private final Vehicle[] vehicles;
+        // Routes built so far, "tour" being large enough for any route the ant can build
+        private final int[] tour;
+        private final int[] offsets;
+        private final PackedSolution solution;
+        private int size;
+        // Distance of the routes (NaN until they are built)
+        private double cost;
+
+        Ant(Instance instance, RandomGenerator random) {
             this.instance = instance;
+            this.random = random;
             this.visited = new boolean[instance.getNumberOfCustomers()];
 
             // Initialize the array of vehicles
@@ -129,59 +445,74 @@ public class Algorithm1 implements Algorithm {
             for (int v = 0; v < numVehicles; v++) {
                 this.vehicles[v] = new Vehicle(instance);
             }
-            this.currentCustomer = this.vehicles[0].getCurrentCustomer(); // The first "currentCustomer" will be 1
-            this.visit(1);
+            // Every vehicle leaves and returns to customer 1, and there is at most one charge station before
+            // each of the customers it serves and before the return
+            this.tour = new int[4 * numVehicles + 2 * instance.getNumberOfCustomers()];
+            this.offsets = new int[numVehicles + 1];
+            this.solution = new PackedSolution(this.tour, this.offsets);
+            this.resetAnt();
         }
 
-        private void buildAntRoute(double[][] pheromoneMatrix, double alpha, double beta) {
-            for (Vehicle v : this.vehicles) {
+        void buildAntRoute(double[] choiceMatrix, NeighbourLists candidates) {
+            for (int route = 0; route < this.vehicles.length; route++) {
+                Vehicle v = this.vehicles[route];
                 // The first visited customer is always 1
                 this.visit(1);
-                v.visitCustomer(1);
+                this.travel(v, 1);
 
                 // The second visited customer is selected randomly
                 int nextCustomer = this.nextCustomerRand();
                 if (nextCustomer != -1) {
                     this.visit(nextCustomer);
-                    v.visitCustomer(this.currentCustomer);
+                    this.travel(v, this.currentCustomer);
                 }
 
                 // Main loop
                 while (v.getCurrentCarry() > 0 && this.customersToVisit() && (nextCustomer != -1)) {
-                    nextCustomer = this.nextCustomerProb(pheromoneMatrix, alpha, beta, v);
+                    nextCustomer = this.nextCustomerProb(choiceMatrix, candidates, v);
                     if (nextCustomer != -1) {
                         if (!this.reachableCustomer(nextCustomer, v)) {
                             int closestChargeStation = this.instance.getClosestChargeStation(this.currentCustomer);
-                            v.visitCustomer(closestChargeStation);
+                            this.travel(v, closestChargeStation);
                             v.chargeBattery();
                         }
                         this.visit(nextCustomer);
-                        v.visitCustomer(this.currentCustomer);
+                        this.travel(v, this.currentCustomer);
                     }
                 }
 
                 // Return to customer 1
                 if (!this.reachableCustomer(1, v)) {
                     int closestChargeStation = this.instance.getClosestChargeStation(this.currentCustomer);
-                    v.visitCustomer(closestChargeStation);
+                    this.travel(v, closestChargeStation);
                     v.chargeBattery();
                 }
                 this.visit(1);
-                v.visitCustomer(1);
+                this.travel(v, 1);
+                this.offsets[route + 1] = this.size;
             }
+            this.cost = Evaluator.evaluate(this.solution, this.instance);
         }
 
-        private void resetAnt() {
+        void resetAnt() {
             // Sets all customers to not visited (false)
-            this.visited = new boolean[instance.getNumberOfCustomers()];
+            Arrays.fill(this.visited, false);
+            this.unvisited = this.visited.length;
 
-            // Initialize the array of vehicles
-            int numVehicles = instance.getNumberOfVehicles();
-            this.vehicles = new Vehicle[numVehicles];
-            for (int v = 0; v < numVehicles; v++) {
-                this.vehicles[v] = new Vehicle(instance);
+            // Empty every vehicle and its route
+            for (Vehicle v : this.vehicles) {
+                v.reset();
             }
-            this.currentCustomer = this.vehicles[0].getCurrentCustomer(); // The first "currentCustomer" will be 1
+            Arrays.fill(this.offsets, 0);
+            this.size = 0;
+            this.cost = Double.NaN;
+            this.currentCustomer = 1;
+        }
+
+        // This method moves "vehicle" to "node", adding it to the route being built
+        private void travel(Vehicle vehicle, int node) {
+            vehicle.visitCustomer(node);
+            this.tour[this.size++] = node;
         }
 
         private boolean reachableCustomer(int nextCustomer, Vehicle vehicle) {
@@ -197,76 +528,77 @@ public class Algorithm1 implements Algorithm {
         }
 
         private boolean customersToVisit() {
-            for (boolean v : this.visited) {
-                if (!v) return true;
-            }
-            return false;
+            return this.unvisited > 0;
         }
 
         private double getAddedPheromones(double q) {
-            return q / Evaluator.evaluate(this.getAntSolution(), this.instance);
+            return q / this.cost;
         }
 
-        private Solution getAntSolution() {
-            List<Integer>[] routes = new ArrayList[this.instance.getNumberOfVehicles()];
-            for (int i = 0; i < this.instance.getNumberOfVehicles(); i++) {
-                routes[i] = this.vehicles[i].getRoute();
-            }
-            return new Solution(routes);
+        // The routes built by the ant, which are only valid until it is reset
+        PackedSolution getPackedSolution() {
+            return this.solution;
+        }
+
+        double getCost() {
+            return this.cost;
+        }
+
+        // This method returns a copy of the routes built by the ant
+        Solution getAntSolution() {
+            return this.solution.toSolution();
         }
 
         // This method returns a random customer
         private int nextCustomerRand() {
-            int nextCustomer = new Random().nextInt(2, this.instance.getNumberOfCustomers() + 1);
             if (!this.customersToVisit()) return -1;
+            int nextCustomer = this.random.nextInt(2, this.instance.getNumberOfCustomers() + 1);
             while (this.isVisited(nextCustomer)) {
-                nextCustomer = new Random().nextInt(2, this.instance.getNumberOfCustomers() + 1);
+                nextCustomer = this.random.nextInt(2, this.instance.getNumberOfCustomers() + 1);
             }
             return nextCustomer;
         }
 
-        // This method returns the next customer to visit according to the provided formula
-        private int nextCustomerProb(double[][] pheromoneMatrix, double alpha, double beta, Vehicle vehicle) {
-            // Compute probabilities
-            List<Double> probabilities = this.computeProb(pheromoneMatrix, alpha, beta, vehicle);
-
-            // Return a customer selected randomly from the "nHighestProbs" ones with the highest probabilities
-            if (!probabilities.isEmpty()) {
-                return probabilities.indexOf(Collections.max(probabilities)) + 1;
-            } else {
-                return -1;
+        // This method returns the next customer to visit according to the provided formula: the one with the
+        // highest probability among the candidates of the current customer, or among every customer when none
+        // of its candidates can be visited (-1 if no customer can be visited)
+        private int nextCustomerProb(double[] choiceMatrix, NeighbourLists candidates, Vehicle vehicle) {
+            int n = this.instance.getNumberOfCustomers();
+            // Row of the current customer in the choice matrix (numerators of the probabilities)
+            int row = (this.currentCustomer - 1) * n - 1;
+            int best = -1;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int rank = 0; rank < candidates.size(this.currentCustomer); rank++) {
+                int customer = candidates.get(this.currentCustomer, rank);
+                if (this.isAvailable(customer, vehicle) && choiceMatrix[row + customer] > bestValue) {
+                    bestValue = choiceMatrix[row + customer];
+                    best = customer;
+                }
             }
-        }
+            if (best != -1) return best;
 
-        private List<Double> computeProb(double[][] pheromoneMatrix, double alpha, double beta, Vehicle vehicle) {
-            List<Double> probabilities = new ArrayList<>(this.instance.getNumberOfCustomers());
-            List<Integer> availableCustomers = this.getAvailableCustomers(vehicle);
-            if (!availableCustomers.isEmpty()) {
-                double d = 0;
-                for (Integer customer : availableCustomers) {
-                    double distance = this.instance.getDistance(this.currentCustomer, customer);
-                    if ((customer - 1) != this.currentCustomer) {
-                        d += (Math.pow(pheromoneMatrix[this.currentCustomer - 1][customer - 1], alpha) * Math.pow((1 / distance), beta));
-                    }
-                }
-                for (int j = 0; j < this.instance.getNumberOfCustomers(); j++) {
-                    if (this.currentCustomer == j || this.visited[j] || vehicle.getCurrentCarry() < this.instance.getDemand(j + 1)) {
-                        probabilities.add(-1.0);
-                    } else {
-                        double distance = this.instance.getDistance(this.currentCustomer, (j + 1));
-                        double n = Math.pow(pheromoneMatrix[this.currentCustomer - 1][j], alpha) * Math.pow((1 / distance), beta);
-                        probabilities.add(j, (n / d));
-                    }
+            for (int customer = 2; customer <= n; customer++) {
+                if (this.isAvailable(customer, vehicle) && choiceMatrix[row + customer] > bestValue) {
+                    bestValue = choiceMatrix[row + customer];
+                    best = customer;
                 }
             }
-            return probabilities;
+            return best;
+        }
+
+        // Whether "customer" is not visited yet and its demand fits in the vehicle
+        private boolean isAvailable(int customer, Vehicle vehicle) {
+            return !this.isVisited(customer) && this.instance.getDemand(customer) <= vehicle.getCurrentCarry();
         }
 
         // This method sets a customer as visited
         private void visit(int customer) {
             this.currentCustomer = customer;
             if ((customer == 1) || (!this.instance.isChargeStation(customer))) { // If "customer" is not a charge station
-                this.visited[customer - 1] = true;
+                if (!this.visited[customer - 1]) {
+                    this.visited[customer - 1] = true;
+                    this.unvisited--;
+                }
             }
         }
 
@@ -274,28 +606,53 @@ public class Algorithm1 implements Algorithm {
         private boolean isVisited(int customer) {
             return this.visited[customer - 1];
         }
-
-        // This method returns the available customers from "customer"
-        private List<Integer> getAvailableCustomers(Vehicle vehicle) {
-            List<Integer> avCustomers = new ArrayList<>();
-            for (int i = 0; i < this.visited.length; i++) {
-                if (!this.isVisited(i + 1) && (this.instance.getDemand(i + 1) <= vehicle.getCurrentCarry())) {
-                    avCustomers.add(i + 1);
-                }
-            }
-            return avCustomers;
-        }
     }
 
     // This class represents an ant colony (collection of "Ant" objects)
-    private static class AntColony implements Iterable<Ant> {
+    static class AntColony implements Iterable<Ant> {
         private final Ant[] colony;
+        // Tasks building the routes in parallel, and what they build them with
+        private List<Callable<Void>> tasks;
+        private double[] choiceMatrix;
+        private NeighbourLists candidates;
 
-        // Constructor, creates a new colony with "numAnts" ants
-        private AntColony(Instance instance, int numAnts) {
+        // Constructor, creates a new colony with "numAnts" ants, each one with a generator split from "random"
+        AntColony(Instance instance, int numAnts, RandomGenerator.SplittableGenerator random) {
             this.colony = new Ant[numAnts];
             for (int i = 0; i < numAnts; i++) {
-                this.colony[i] = new Ant(instance);
+                this.colony[i] = new Ant(instance, random.split());
+            }
+        }
+
+        // This method makes every ant build its route, in parallel if an executor is given
+        private void buildAntRoutes(double[] choiceMatrix, NeighbourLists candidates, ExecutorService executor) {
+            if (executor == null) {
+                for (Ant ant : this.colony) {
+                    ant.buildAntRoute(choiceMatrix, candidates);
+                }
+                return;
+            }
+            // The tasks are created once and read the arguments of the current call
+            this.choiceMatrix = choiceMatrix;
+            this.candidates = candidates;
+            if (this.tasks == null) {
+                this.tasks = new ArrayList<>(this.colony.length);
+                for (Ant ant : this.colony) {
+                    this.tasks.add(() -> {
+                        ant.buildAntRoute(this.choiceMatrix, this.candidates);
+                        return null;
+                    });
+                }
+            }
+            try {
+                for (Future<Void> future : executor.invokeAll(this.tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while building the ants' routes");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("An ant failed to build its route", e.getCause());
             }
         }
 
@@ -342,7 +699,6 @@ public class Algorithm1 implements Algorithm {
     // This class represents each electric vehicle
     private static class Vehicle {
         private final Instance instance;
-        private final List<Integer> vehicleRoute;
         private int currentCustomer;
         private final double carryingCapacity;
         private double currentCarry;
@@ -351,7 +707,6 @@ public class Algorithm1 implements Algorithm {
 
         private Vehicle(Instance instance) {
             this.instance = instance;
-            this.vehicleRoute = new ArrayList<>();
             this.currentCustomer = 1;
             this.carryingCapacity = instance.getCarryingCapacity();
             this.currentCarry = instance.getCarryingCapacity();
@@ -381,12 +736,13 @@ public class Algorithm1 implements Algorithm {
             }
             // Update the current customer
             this.currentCustomer = customer;
-            // Add the customer to the vehicle's route
-            this.vehicleRoute.add(customer);
         }
 
-        private List<Integer> getRoute() {
-            return this.vehicleRoute;
+        // This method takes the vehicle back to customer 1, fully loaded and charged
+        private void reset() {
+            this.currentCustomer = 1;
+            this.currentCarry = this.carryingCapacity;
+            this.currentBattery = this.batteryCapacity;
         }
 
         private void chargeBattery() {
@@ -7,109 +7,237 @@ import es.urjc.grafo.ABII.Model.Solution;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.random.RandomGenerator;
 
 public class Algorithm2 implements Algorithm {
+    // Which islands every island sends its migrants to, when the population is split into islands
+    public enum Topology {
+        // The next one, the last island sending to the first
+        RING,
+        // Every other island
+        FULLY_CONNECTED
+    }
+
+    // Number of threads used to generate the offspring (1 generates them sequentially)
+    private final int parallelism;
+    // Seed of the master random generator, from which every offspring gets its own generator
+    private final long seed;
+    // Name of the random generator algorithm (see java.util.random.RandomGeneratorFactory)
+    private final String randomAlgorithm;
+    // Number of populations evolving independently (1 evolves a single population), how they exchange
+    // their best individuals and every how many generations (see IslandModel)
+    private final int islands;
+    private final Topology topology;
+    private final int migrationInterval;
+
+    // Runs sequentially with a random seed (the constructors below opt into a parallel run)
+    public Algorithm2() {
+        this(1, ThreadLocalRandom.current().nextLong());
+    }
+
+    // The result only depends on "seed", whatever the value of "parallelism"
+    public Algorithm2(int parallelism, long seed) {
+        this(parallelism, seed, RandomSource.DEFAULT_ALGORITHM);
+    }
+
+    // "randomAlgorithm" must name a splittable generator, such as "L64X128MixRandom"
+    public Algorithm2(int parallelism, long seed, String randomAlgorithm) {
+        this(parallelism, seed, randomAlgorithm, 1, Topology.RING, 1);
+    }
+
+    // Splits the population into "islands" islands, each one evolving on one of "parallelism" threads.
+    // With more than one island, the result also depends on the timing of the threads
+    public Algorithm2(int parallelism, long seed, String randomAlgorithm, int islands, Topology topology,
+                      int migrationInterval) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        if (islands < 1) {
+            throw new IllegalArgumentException("islands must be at least 1: " + islands);
+        }
+        if (migrationInterval < 1) {
+            throw new IllegalArgumentException("migrationInterval must be at least 1: " + migrationInterval);
+        }
+        this.parallelism = parallelism;
+        this.seed = seed;
+        this.randomAlgorithm = RandomSource.requireSplittable(randomAlgorithm);
+        this.islands = islands;
+        this.topology = Objects.requireNonNull(topology);
+        this.migrationInterval = migrationInterval;
+    }
 
     // This method is used to run the algorithm
     public Solution run(Instance instance) {
+        int maxGenerations = 700;
+        return this.run(instance, StopCondition.iterations(maxGenerations));
+    }
+
+    // This method runs the algorithm until "stopCondition" is met, notifying "listener" of every new best solution
+    public Solution run(Instance instance, StopCondition stopCondition, SolutionListener listener) {
         // -------- Timer -------- //
         Instant t0 = Instant.now();
+        StopCondition.Tracker tracker = stopCondition.start(instance);
 
         // -------- Parameters section -------- //
         // Set the size of the population
         // int populationSize = 550;
         int populationSize = 800;
-        int maxGenerations = 700;
         double crossoverRate = 0.13;
         double mutationRate = 0.24;
+        // Whether the best offspring of every generation is improved with a local search
+        boolean applyLocalSearch = true;
 
         // -------- Initialize section -------- //
+        RandomGenerator.SplittableGenerator random = RandomSource.create(this.randomAlgorithm, this.seed);
+        Individual bestIndividual;
+        try {
+            if (this.islands > 1) {
+                // Every island evolves an equal share of the population
+                IslandModel model = new IslandModel(instance, this.topology, this.migrationInterval,
+                        Math.max(2, populationSize / this.islands), crossoverRate, mutationRate, applyLocalSearch);
+                bestIndividual = model.run(this.islands, this.parallelism, random, tracker, listener);
+            } else {
+                bestIndividual = this.evolve(instance, populationSize, crossoverRate, mutationRate, applyLocalSearch,
+                        random, tracker, listener);
+            }
+        } finally {
+            // The decoder and repair of this thread would otherwise keep the instance alive after the run (the
+            // threads of the pools end with it)
+            SplitDecoder.release();
+            Repair.release();
+        }
+
+        // Print out the algorithm's execution time
+        Instant t1 = Instant.now();
+        Duration ssgaDuration = Duration.between(t0, t1);
+        System.out.println("Duration --> " + ssgaDuration);
+
+        return bestIndividual.getSolution();
+    }
+
+    // This method evolves a single population until "tracker" is done and returns its best feasible individual
+    private Individual evolve(Instance instance, int populationSize, double crossoverRate, double mutationRate,
+                              boolean applyLocalSearch, RandomGenerator.SplittableGenerator random,
+                              StopCondition.Tracker tracker, SolutionListener listener) {
         // Generate the initial population
-        Population population = new Population(instance, populationSize);
+        Population population = new Population(instance, populationSize, random);
+        tracker.addEvaluations(populationSize);
+        tracker.initialSolution(population.getBestFitness());
+        notifyBest(population.getPopulationsBest(), listener, tracker);
+        // Offspring only read their parents, so they can be generated in parallel
+        ExecutorService executor = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+        LocalSearch localSearch = applyLocalSearch ? new LocalSearch(instance) : null;
 
         // -------- Main loop -------- //
-        for (int i = 0; i < maxGenerations; i++) {
-            // Generate mating pool
-            List<Integer> matingPool = new ArrayList<>(populationSize);
-            for (int j = 0; j < populationSize; j++) {
-                matingPool.add(j);
-            }
-
-            // Shuffle the mating pool
-            Collections.shuffle(matingPool);
-
-            // Apply crossover
-            List<Individual> crossovers = new ArrayList<>();
-            for (int j = 0; j < (populationSize - 1); j++) {
-                double crossoverProb = new Random().nextDouble(0, 1);
-                if (crossoverProb > crossoverRate) {
-                    Individual individual1 = population.get(j);
-                    Individual individual2 = population.get(j + 1);
-                    Individual crossover = individual1.partiallyMappedX(individual2);
-                    crossovers.add(crossover);
+        try {
+            while (!tracker.isDone()) {
+                generation(population, random, crossoverRate, mutationRate, executor, localSearch);
+                tracker.addEvaluations(populationSize - 1);
+                if (tracker.iterationDone(population.getBestFitness())) {
+                    notifyBest(population.getPopulationsBest(), listener, tracker);
                 }
             }
-
-            // Apply mutation
-            for (Individual crossover : crossovers) {
-                double mutationProb = new Random().nextDouble(0, 1);
-                if (mutationProb > mutationRate) {
-                    crossover.mutateSwap();
-                }
+        } catch (CancellationException e) {
+            // Interrupted in the middle of a generation, which leaves the population untouched
+            if (!Thread.currentThread().isInterrupted()) throw e;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
             }
-            Population generatedPopulation = new Population(instance, crossovers);
+        }
+        return population.getPopulationsBest();
+    }
 
-            // Replace the worst individual of the population with the best one found
-            Individual bestFound = generatedPopulation.getPopulationsBest();
-            population.replaceWorst(bestFound);
+    // This method runs one generation: the best offspring of consecutive individuals, improved with
+    // "localSearch" unless it is null, replaces the worst individual
+    static void generation(Population population, RandomGenerator.SplittableGenerator random, double crossoverRate,
+                           double mutationRate, ExecutorService executor, LocalSearch localSearch) {
+        // Apply crossover and mutation, every offspring with its own generator
+        population.breedAll(random, crossoverRate, mutationRate, executor);
+
+        // Replace the worst individual of the population with the best one found
+        Individual bestFound = population.getBestOffspring();
+        if (localSearch != null && bestFound != null) {
+            bestFound = bestFound.improve(localSearch);
         }
-        Individual bestIndividual = population.getPopulationsBest();
+        population.replaceWorst(bestFound);
+    }
 
-        // Print out the algorithm's execution time
-        Instant t1 = Instant.now();
-        Duration ssgaDuration = Duration.between(t0, t1);
-        System.out.println("Duration --> " + ssgaDuration);
+    static void notifyBest(Individual best, SolutionListener listener, StopCondition.Tracker tracker) {
+        if (best != null) {
+            listener.onImprovement(new SolutionListener.Improvement(best.getSolution(), best.getFitness(), true,
+                    tracker.getElapsed(), tracker.getIterations()));
+        }
+    }
 
-        return bestIndividual.getSolution();
+    // Ties keep the first individual, so the reduction does not depend on the order tasks finish in
+    static Individual getBetter(Individual best, Individual candidate) {
+        if (candidate == null || !candidate.isFeasible()) return best;
+        if (best == null || candidate.getFitness() < best.getFitness()) return candidate;
+        return best;
     }
 
     // This method represents each individual
-    private static class Individual {
+    static class Individual {
+        // Random routes drawn again when they cannot be repaired, before giving up on the instance
+        private static final int MAX_REDRAWS = 10;
         private final Instance instance;
         private int currentCustomer;
         private boolean[] visited;
         private Vehicle[] vehicles;
-
-        // This constructor generates a random individual
-        private Individual(Instance instance, boolean generateRandom) {
+        // Cached evaluation of the individual's solution, refreshed whenever the routes change
+        private double fitness;
+        private boolean feasible;
+
+        // This constructor generates a random feasible individual, repairing the random routes. They are
+        // only drawn again in the unlikely case that they cannot be repaired, and at most "MAX_REDRAWS" times,
+        // as they never can if the instance has no feasible solution
+        Individual(Instance instance, RandomGenerator random) {
             this.instance = instance;
-            this.visited = new boolean[instance.getNumberOfCustomers()];
-            this.vehicles = new Vehicle[instance.getNumberOfVehicles()];
-            for (int i = 0; i < instance.getNumberOfVehicles(); i++) {
-                this.vehicles[i] = new Vehicle(instance);
-            }
-            if (generateRandom) {
-                this.generateRandom();
-                while (!Evaluator.isFeasible(this.getSolution(), instance)) {
-                    this.visited = new boolean[instance.getNumberOfCustomers()];
-                    this.vehicles = new Vehicle[instance.getNumberOfVehicles()];
-                    for (int i = 0; i < instance.getNumberOfVehicles(); i++) {
-                        this.vehicles[i] = new Vehicle(instance);
-                    }
-                    this.generateRandom();
+            this.reset();
+            this.generateRandom(random);
+            for (int redraws = 0; !this.repair(); redraws++) {
+                if (redraws == MAX_REDRAWS) {
+                    throw new IllegalArgumentException("Cannot build a feasible individual after " + MAX_REDRAWS
+                            + " redraws: some customers do not fit in the vehicles");
                 }
+                this.reset();
+                this.generateRandom(random);
             }
+            this.evaluate();
         }
 
         // This constructor creates a new individual based on a crossover (solution without base or charging stations)
-        private Individual(Instance instance, List<Integer> route) {
+        Individual(Instance instance, List<Integer> route) {
+            this.instance = instance;
+            this.reset();
+            this.decode(route);
+            this.evaluate();
+        }
+
+        // This constructor creates an individual that follows the routes of "solution"
+        Individual(Instance instance, Solution solution) {
             this.instance = instance;
+            this.reset();
+            this.follow(solution);
+            this.evaluate();
+        }
+
+        // This method empties the routes of the individual
+        void reset() {
             this.visited = new boolean[instance.getNumberOfCustomers()];
             this.vehicles = new Vehicle[instance.getNumberOfVehicles()];
             for (int i = 0; i < instance.getNumberOfVehicles(); i++) {
                 this.vehicles[i] = new Vehicle(instance);
             }
-            this.fromCustomers(route);
+        }
+
+        // This method updates the cached fitness and feasibility
+        private void evaluate() {
+            Solution solution = this.getSolution();
+            this.fitness = Evaluator.evaluate(solution, this.instance);
+            this.feasible = Evaluator.isFeasible(solution, this.instance);
         }
 
         // This method makes the individual visit a customer
@@ -127,7 +255,7 @@ public class Algorithm2 implements Algorithm {
 
         // This method returns the individual's solution
         private Solution getSolution() {
-            List<Integer>[] routes = new ArrayList[this.instance.getNumberOfVehicles()];
+            List<Integer>[] routes = Solution.newRoutes(this.instance.getNumberOfVehicles());
             for (int i = 0; i < this.instance.getNumberOfVehicles(); i++) {
                 routes[i] = this.vehicles[i].getRoute();
             }
@@ -135,7 +263,7 @@ public class Algorithm2 implements Algorithm {
         }
 
         // This method returns the route of an individual (without "1" and without charging stations, just customers)
-        public List<Integer> getCustomers() {
+        List<Integer> getCustomers() {
             List<Integer> customers = new ArrayList<>();
             for (Vehicle v : this.vehicles) {
                 for (Integer c : v.getRoute()) {
@@ -148,11 +276,54 @@ public class Algorithm2 implements Algorithm {
         }
 
         // This method returns the fitness of the individual's solution
-        private double getFitness() {
-            return Evaluator.evaluate(this.getSolution(), this.instance);
+        double getFitness() {
+            return this.fitness;
+        }
+
+        boolean isFeasible() {
+            return this.feasible;
         }
 
-        private void fromCustomers(List<Integer> customers) {
+        // This method makes the vehicles follow the routes of "solution"
+        private void follow(Solution solution) {
+            for (int i = 0; i < this.vehicles.length; i++) {
+                for (int node : solution.routes()[i]) {
+                    this.visit(node);
+                    this.vehicles[i].visitCustomer(node);
+                    if (this.instance.isChargeStation(node)) {
+                        this.vehicles[i].chargeBattery();
+                    }
+                }
+            }
+        }
+
+        // This method splits "customers" into the routes with the split decoder, falling back on the greedy
+        // decoding of "fromCustomers", repaired, if they do not fit in the vehicles
+        void decode(List<Integer> customers) {
+            Solution split = SplitDecoder.of(this.instance).decode(customers);
+            if (split == null) {
+                this.fromCustomers(customers);
+                this.repair();
+            } else {
+                this.follow(split);
+            }
+        }
+
+        // This method repairs the routes if they are not feasible, returning whether they are feasible
+        // afterwards (they are left as they are if they cannot be repaired)
+        private boolean repair() {
+            Solution solution = this.getSolution();
+            if (Evaluator.isFeasible(solution, this.instance)) return true;
+            Solution repaired = Repair.of(this.instance).repair(solution);
+            if (repaired == null) return false;
+            this.reset();
+            this.follow(repaired);
+            return true;
+        }
+
+        // This method fills the vehicles in turn, visiting the closest charge station whenever the next
+        // customer cannot be reached
+        void fromCustomers(List<Integer> customers) {
             int crossoverIdx = 0;
             for (Vehicle v : this.vehicles) {
                 // The first visited customer is always 1
@@ -186,8 +357,15 @@ public class Algorithm2 implements Algorithm {
             }
         }
 
-        // This method generates a random but feasible individual
-        private void generateRandom() {
+        // This method returns the individual improved with "localSearch" (itself if it cannot be improved)
+        Individual improve(LocalSearch localSearch) {
+            Solution solution = this.getSolution();
+            Solution improved = localSearch.improve(solution);
+            return improved == solution ? this : new Individual(this.instance, improved);
+        }
+
+        // This method generates a random individual, filling the vehicles in turn
+        private void generateRandom(RandomGenerator random) {
             for (Vehicle v : this.vehicles) {
                 // The first visited customer is always 1
                 this.visit(1);
@@ -195,7 +373,7 @@ public class Algorithm2 implements Algorithm {
 
                 int nextCustomer = 0;
                 while (v.getCurrentCarry() > 0 && this.customersToVisit() && (nextCustomer != -1)) {
-                    nextCustomer = this.nextCustomerRand(v);
+                    nextCustomer = this.nextCustomerRand(v, random);
                     if (nextCustomer != -1) {
                         if (!v.reachableCustomer(nextCustomer)) {
                             int closestChargeStation = this.instance.getClosestChargeStation(this.currentCustomer);
@@ -219,12 +397,12 @@ public class Algorithm2 implements Algorithm {
         }
 
         // This method returns a random customer
-        private int nextCustomerRand(Vehicle vehicle) {
+        private int nextCustomerRand(Vehicle vehicle, RandomGenerator random) {
             List<Integer> avCustomers = this.getAvailableCustomers(vehicle);
             if (avCustomers.isEmpty()) {
                 return -1;
             }
-            int randIdx = new Random().nextInt(avCustomers.size());
+            int randIdx = random.nextInt(avCustomers.size());
             return avCustomers.get(randIdx);
         }
 
@@ -246,145 +424,313 @@ public class Algorithm2 implements Algorithm {
             }
             return false;
         }
+    }
 
-        private Individual partiallyMappedX(Individual i2) {
-            List<Integer> l1 = this.getCustomers();
-            List<Integer> l2 = i2.getCustomers();
-            List<Integer> crossover = new ArrayList<>();
+    // This method represents a population (collection of individuals)
+    // What breeding reads is laid out in flat arrays: the customer sequences of the individuals (their
+    // chromosomes) one after another in a single block, and their fitness and feasibility in parallel
+    // arrays. The offspring of a generation are written into a block of the same kind, one slot per pair
+    // of consecutive individuals, which is reused from one generation to the next, so only the best
+    // offspring becomes an Individual. Individuals are indexed by a max-heap on fitness, so the worst one
+    // is always at the root, and the best feasible one is tracked on every replacement
+    static class Population implements Iterable<Individual> {
+        private final Instance instance;
+        // Number of genes of every chromosome, one per customer
+        private final int length;
+        private final Individual[] population;
+        private final int[] chromosomes;
+        private final double[] fitness;
+        private final boolean[] feasible;
+        // Offspring of the current generation. A slot only keeps its decoded individual when the split
+        // decoder cannot fit its chromosome in the vehicles, and is not feasible if there is no offspring
+        private final int[] offspring;
+        private final double[] offspringFitness;
+        private final boolean[] offspringFeasible;
+        private final Individual[] offspringDecoded;
+        // Generator of every slot for the current generation, and the tasks that breed them in parallel
+        private final RandomGenerator[] offspringRandom;
+        private List<Callable<Void>> breedTasks;
+        // Heap of population indices, "heap[0]" being the index of the worst individual
+        private final int[] heap;
+        // Index of the best feasible individual (-1 if there is none)
+        private int bestIdx;
+
+        // This constructor already generates an initial population
+        Population(Instance instance, int populationSize, RandomGenerator random) {
+            this.instance = instance;
+            this.length = instance.getNumberOfCustomers() - 1;
+            this.population = new Individual[populationSize];
+            this.chromosomes = new int[populationSize * this.length];
+            this.fitness = new double[populationSize];
+            this.feasible = new boolean[populationSize];
+            for (int i = 0; i < populationSize; i++) {
+                this.store(i, new Individual(instance, random));
+            }
+            this.offspring = new int[(populationSize - 1) * this.length];
+            this.offspringFitness = new double[populationSize - 1];
+            this.offspringFeasible = new boolean[populationSize - 1];
+            this.offspringDecoded = new Individual[populationSize - 1];
+            this.offspringRandom = new RandomGenerator[populationSize - 1];
+            this.heap = new int[populationSize];
+            this.buildIndex();
+        }
+
+        // This method puts "individual" at "idx", copying its chromosome, fitness and feasibility
+        private void store(int idx, Individual individual) {
+            this.population[idx] = individual;
+            List<Integer> customers = individual.getCustomers();
+            for (int i = 0; i < this.length; i++) {
+                this.chromosomes[idx * this.length + i] = customers.get(i);
+            }
+            this.fitness[idx] = individual.getFitness();
+            this.feasible[idx] = individual.isFeasible();
+        }
+
+        // This method breeds every offspring (in parallel if an executor is given), slot "j" from
+        // individuals "j" and "j + 1", every one with its own generator
+        void breedAll(RandomGenerator.SplittableGenerator random, double crossoverRate, double mutationRate,
+                      ExecutorService executor) {
+            for (int slot = 0; slot < this.offspringRandom.length; slot++) {
+                this.offspringRandom[slot] = random.split();
+            }
+            try {
+                if (executor == null) {
+                    for (int slot = 0; slot < this.offspringRandom.length; slot++) {
+                        this.breed(slot, crossoverRate, mutationRate, this.offspringRandom[slot]);
+                    }
+                    return;
+                }
+                if (this.breedTasks == null) {
+                    this.breedTasks = new ArrayList<>(this.offspringRandom.length);
+                    for (int slot = 0; slot < this.offspringRandom.length; slot++) {
+                        int task = slot;
+                        this.breedTasks.add(() -> {
+                            this.breed(task, crossoverRate, mutationRate, this.offspringRandom[task]);
+                            return null;
+                        });
+                    }
+                }
+                for (Future<Void> future : executor.invokeAll(this.breedTasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while generating the offspring");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to generate an offspring", e.getCause());
+            }
+        }
 
-            // Inicializamos todos los valores de "crossover" a "null"
-            for (int i = 0; i < this.instance.getNumberOfCustomers() - 1; i++) {
-                crossover.add(null);
+        // This method breeds the offspring of slot "slot" (none if the crossover is not applied, or if its
+        // routes cannot be repaired)
+        void breed(int slot, double crossoverRate, double mutationRate, RandomGenerator random) {
+            this.offspringFeasible[slot] = false;
+            this.offspringDecoded[slot] = null;
+            double crossoverProb = random.nextDouble();
+            if (crossoverProb <= crossoverRate) {
+                return;
+            }
+            this.partiallyMappedX(slot, random);
+            if (!this.offspringFeasible[slot]) {
+                return;
             }
+            double mutationProb = random.nextDouble();
+            if (mutationProb > mutationRate) {
+                this.mutateSwap(slot, random);
+            }
+        }
 
-            // Copiamos un segmento aleatorio de "l1" a "crossover"
-            int randStart = new Random().nextInt(0, this.instance.getNumberOfCustomers() - 1);
-            int randSize = new Random().nextInt(1, this.instance.getNumberOfCustomers() - 1);
-            while ((randStart + randSize) >= (this.instance.getNumberOfCustomers() - 1)) {
-                randStart = new Random().nextInt(0, this.instance.getNumberOfCustomers() - 1);
-                randSize = new Random().nextInt(1, this.instance.getNumberOfCustomers() - 1);
+        // This method writes into slot "slot" the partially mapped crossover of individuals "slot" and "slot + 1"
+        private void partiallyMappedX(int slot, RandomGenerator random) {
+            int child = slot * this.length;
+            int parent1 = slot * this.length;
+            int parent2 = (slot + 1) * this.length;
+            Genes genes = Genes.of(this.instance.getNumberOfCustomers() + 1);
+            int[] position2 = genes.position;
+            boolean[] placed = genes.placed;
+            for (int i = 0; i < this.length; i++) {
+                position2[this.chromosomes[parent2 + i]] = i;
+                placed[this.chromosomes[parent2 + i]] = false;
+                // Customers are never 0, which marks an empty gene
+                this.offspring[child + i] = 0;
             }
 
+            // Copy a random segment of the first parent
+            int randStart = random.nextInt(0, this.length);
+            int randSize = random.nextInt(1, this.length);
+            while ((randStart + randSize) >= this.length) {
+                randStart = random.nextInt(0, this.length);
+                randSize = random.nextInt(1, this.length);
+            }
             for (int i = randStart; i < (randStart + randSize); i++) {
-                crossover.set(i, l1.get(i));
+                this.offspring[child + i] = this.chromosomes[parent1 + i];
+                placed[this.chromosomes[parent1 + i]] = true;
             }
 
-            //
+            // Place the customers of the second parent's segment following the mapping
             for (int i = randStart; i < (randStart + randSize); i++) {
-                int e1 = l1.get(i);
-                int e2 = l2.get(i);
-                if (!crossover.contains(e2)) {
-                    int insertIndex = l2.indexOf(e1);
-                    while (crossover.get(insertIndex) != null) {
-                        e1 = l1.get(insertIndex);
-                        insertIndex = l2.indexOf(e1);
+                int e1 = this.chromosomes[parent1 + i];
+                int e2 = this.chromosomes[parent2 + i];
+                if (!placed[e2]) {
+                    int insertIndex = position2[e1];
+                    while (this.offspring[child + insertIndex] != 0) {
+                        e1 = this.chromosomes[parent1 + insertIndex];
+                        insertIndex = position2[e1];
                     }
-                    crossover.set(insertIndex, e2);
+                    this.offspring[child + insertIndex] = e2;
+                    placed[e2] = true;
                 }
             }
 
-            for (int i = 0; i < l2.size(); i++) {
-                int e2 = l2.get(i);
-                if (!crossover.contains(e2)) {
+            // The rest of the customers fill the empty genes in the order of the second parent
+            for (int i = 0; i < this.length; i++) {
+                int e2 = this.chromosomes[parent2 + i];
+                if (!placed[e2]) {
                     int insertIndex = i;
-                    while (crossover.get(insertIndex) != null) {
+                    while (this.offspring[child + insertIndex] != 0) {
                         insertIndex++;
                     }
-                    crossover.set(insertIndex, e2);
+                    this.offspring[child + insertIndex] = e2;
+                    placed[e2] = true;
                 }
             }
+            this.evaluateOffspring(slot);
+        }
 
-            Individual crossoverIndividual = new Individual(instance, crossover);
-
-            if (!Evaluator.isFeasible(crossoverIndividual.getSolution(), instance)) {
-                crossoverIndividual = this.partiallyMappedX(i2);
+        // This method applies swap mutation to the offspring of slot "slot"
+        private void mutateSwap(int slot, RandomGenerator random) {
+            int i = random.nextInt(0, this.length);
+            int j = random.nextInt(0, this.length);
+            while (i == j) {
+                i = random.nextInt(0, this.length);
+                j = random.nextInt(0, this.length);
             }
-
-            // Devolvemos "crossover"
-            return crossoverIndividual;
+            int child = slot * this.length;
+            int temp = this.offspring[child + i];
+            this.offspring[child + i] = this.offspring[child + j];
+            this.offspring[child + j] = temp;
+            this.evaluateOffspring(slot);
         }
 
-        // This method applies scramble mutation to the individual
-        private void mutateScramble() {
-            List<Integer> customers = this.getCustomers();
-            int randBegin = new Random().nextInt(0, customers.size() / 2);
-            int randSize = new Random().nextInt(1, customers.size() / 2);
-            while (randBegin + randSize > customers.size()) {
-                randBegin = new Random().nextInt(0, customers.size() / 2);
-                randSize = new Random().nextInt(1, customers.size() / 2);
+        // This method evaluates the offspring of slot "slot" as Individual#decode would decode it, only
+        // building the individual when it has to fall back on the repaired greedy decoding
+        private void evaluateOffspring(int slot) {
+            double cost = SplitDecoder.of(this.instance).cost(this.offspring, slot * this.length);
+            if (cost != Double.POSITIVE_INFINITY) {
+                this.offspringFitness[slot] = cost;
+                this.offspringFeasible[slot] = true;
+                this.offspringDecoded[slot] = null;
+                return;
             }
-            List<Integer> toMutate = customers.subList(randBegin, randBegin + randSize + 1);
-            Collections.shuffle(toMutate);
-            this.fromCustomers(customers);
+            Individual individual = new Individual(this.instance, this.offspringCustomers(slot));
+            this.offspringFitness[slot] = individual.getFitness();
+            this.offspringFeasible[slot] = individual.isFeasible();
+            this.offspringDecoded[slot] = individual;
         }
 
-        // This method applies swap mutation to the individual
-        private void mutateSwap() {
-            List<Integer> customers = this.getCustomers();
-            int i = new Random().nextInt(0, customers.size());
-            int j = new Random().nextInt(0, customers.size());
-            while (i == j) {
-                i = new Random().nextInt(0, customers.size());
-                j = new Random().nextInt(0, customers.size());
+        private List<Integer> offspringCustomers(int slot) {
+            List<Integer> customers = new ArrayList<>(this.length);
+            for (int i = 0; i < this.length; i++) {
+                customers.add(this.offspring[slot * this.length + i]);
             }
-            int temp = customers.get(i);
-            customers.set(i, customers.get(j));
-            customers.set(j, temp);
-            this.fromCustomers(customers);
+            return customers;
         }
-    }
-
-    // This method represents a population (collection of individuals)
-    private static class Population implements Iterable<Individual> {
-        private final Instance instance;
-        private final Individual[] population;
 
-        // This constructor already generates an initial population
-        private Population(Instance instance, int populationSize) {
-            this.instance = instance;
-            this.population = new Individual[populationSize];
-            for (int i = 0; i < populationSize; i++) {
-                this.population[i] = new Individual(instance, true);
+        // This method returns the best feasible offspring of the generation (null if there is none). Ties
+        // keep the first slot, so the result does not depend on the order slots are bred in
+        Individual getBestOffspring() {
+            int best = -1;
+            for (int slot = 0; slot < this.offspringFeasible.length; slot++) {
+                if (this.offspringFeasible[slot] && (best == -1 || this.offspringFitness[slot] < this.offspringFitness[best])) {
+                    best = slot;
+                }
             }
+            if (best == -1) return null;
+            Individual decoded = this.offspringDecoded[best];
+            return decoded != null ? decoded : new Individual(this.instance, this.offspringCustomers(best));
         }
 
-        // This constructor creates a new population given a list of individuals
-        private Population(Instance instance, List<Individual> individuals) {
-            this.instance = instance;
-            this.population = new Individual[individuals.size()];
+        // This method builds the heap and looks for the best feasible individual
+        private void buildIndex() {
             for (int i = 0; i < this.population.length; i++) {
-                this.population[i] = individuals.get(i);
+                this.heap[i] = i;
+            }
+            for (int i = this.population.length / 2 - 1; i >= 0; i--) {
+                this.siftDown(i);
             }
+            this.findBest();
         }
 
-        private Individual getPopulationsBest() {
-            Individual bestIndividual = null;
-            double bestScore = Double.MAX_VALUE;
+        private void findBest() {
+            this.bestIdx = -1;
             for (int i = 0; i < this.population.length; i++) {
-                double fitness = this.population[i].getFitness();
-                if ((fitness < bestScore) && Evaluator.isFeasible(this.population[i].getSolution(), this.instance)) {
-                    bestIndividual = this.population[i];
-                    bestScore = fitness;
-                }
+                this.updateBest(i);
+            }
+        }
+
+        // This method checks whether the individual at "idx" is the new best feasible one
+        private void updateBest(int idx) {
+            if (this.feasible[idx] && (this.bestIdx == -1 || this.fitness[idx] < this.fitness[this.bestIdx])) {
+                this.bestIdx = idx;
             }
-            return bestIndividual;
         }
 
-        private Individual get(int idx) {
+        // Fitness of the best feasible individual (infinity if there is none)
+        private double getBestFitness() {
+            return this.bestIdx == -1 ? Double.POSITIVE_INFINITY : this.fitness[this.bestIdx];
+        }
+
+        Individual getPopulationsBest() {
+            return this.bestIdx == -1 ? null : this.population[this.bestIdx];
+        }
+
+        double getWorstFitness() {
+            return this.fitnessAt(0);
+        }
+
+        Individual get(int idx) {
             return this.population[idx];
         }
 
-        private void replaceWorst(Individual best) {
-            double worstScore = Double.MIN_VALUE;
-            int worstIndividualIdx = 0;
-            for (int i = 0; i < this.population.length; i++) {
-                double fitness = this.population[i].getFitness();
-                if (fitness > worstScore) {
-                    worstIndividualIdx = i;
-                    worstScore = fitness;
-                }
+        int size() {
+            return this.population.length;
+        }
+
+        void replaceWorst(Individual best) {
+            if (best == null) return;
+            int worstIndividualIdx = this.heap[0];
+            this.store(worstIndividualIdx, best);
+            this.siftDown(0);
+            if (worstIndividualIdx == this.bestIdx) {
+                // Only happens when every individual has the same fitness
+                this.findBest();
+            } else {
+                this.updateBest(worstIndividualIdx);
+            }
+        }
+
+        private void siftDown(int position) {
+            int size = this.heap.length;
+            while (true) {
+                int largest = position;
+                int left = 2 * position + 1;
+                int right = left + 1;
+                if (left < size && this.fitnessAt(left) > this.fitnessAt(largest)) largest = left;
+                if (right < size && this.fitnessAt(right) > this.fitnessAt(largest)) largest = right;
+                if (largest == position) return;
+                this.swapHeap(position, largest);
+                position = largest;
             }
-            this.population[worstIndividualIdx] = best;
+        }
+
+        private double fitnessAt(int heapIdx) {
+            return this.fitness[this.heap[heapIdx]];
+        }
+
+        private void swapHeap(int a, int b) {
+            int aux = this.heap[a];
+            this.heap[a] = this.heap[b];
+            this.heap[b] = aux;
         }
 
         // Implement necessary methods to use iterator
@@ -405,6 +751,24 @@ public class Algorithm2 implements Algorithm {
         }
     }
 
+    // Scratch arrays of the crossover, one set per thread
+    private static final class Genes {
+        private static final ThreadLocal<Genes> GENES = ThreadLocal.withInitial(Genes::new);
+        // Position of every customer in the second parent, and whether it is already in the offspring
+        private int[] position = new int[0];
+        private boolean[] placed = new boolean[0];
+
+        // This method returns the arrays of the calling thread, indexed by node up to "size" (excluded)
+        private static Genes of(int size) {
+            Genes genes = GENES.get();
+            if (genes.position.length < size) {
+                genes.position = new int[size];
+                genes.placed = new boolean[size];
+            }
+            return genes;
+        }
+    }
+
     // This method represents each vehicle
     private static class Vehicle {
         private final Instance instance;
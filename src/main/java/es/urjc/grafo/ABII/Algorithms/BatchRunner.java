@@ -0,0 +1,260 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Solves many instances concurrently. Instances are loaded on virtual threads and solved on a fixed pool
+ * of "parallelism" threads, with at most twice as many instances loaded but not yet solved, so memory stays
+ * bounded however many instances there are. Every instance gets its own algorithm, which should run on
+ * a single thread (e.g. {@code new Algorithm2(1, seed)}), since the pool already keeps every core busy.
+ * A result is written as soon as its instance is solved, so results come in the order instances finish.
+ * <p>
+ * From the command line:
+ * {@code BatchRunner [--algorithm aco|ssga] [--threads N] [--time-limit SECONDS] [--seed SEED]
+ * [--format csv|jsonl] [--output FILE] PATH...}, every directory standing for the files in it.
+ * Results go to the standard output by default. Whatever the algorithms print (their durations) goes to
+ * the standard error instead, so that the results stay machine-readable.
+ */
+public final class BatchRunner {
+
+    public enum Format {
+        // A header, then one line per instance: instance,cost,gap,feasible,runtime_ms,error
+        CSV,
+        // One JSON object per instance, with the same fields as the CSV columns
+        JSON_LINES
+    }
+
+    /**
+     * Outcome of one instance. "gap" is (cost - optimum) / optimum, NaN if the optimum is unknown, and
+     * "error" is null unless the instance could not be loaded or solved (then "cost" is NaN too).
+     */
+    public record Result(String instance, double cost, double gap, boolean feasible, Duration runtime, String error) {
+    }
+
+    private static final String USAGE = "Usage: BatchRunner [--algorithm aco|ssga] [--threads N] "
+            + "[--time-limit SECONDS] [--seed SEED] [--format csv|jsonl] [--output FILE] PATH...";
+
+    private final Supplier<? extends Algorithm> algorithms;
+    private final int parallelism;
+    // Budget of every instance (null to run the algorithms with their default stop condition)
+    private final StopCondition stopCondition;
+    private final Format format;
+
+    public BatchRunner(Supplier<? extends Algorithm> algorithms, int parallelism, StopCondition stopCondition,
+                       Format format) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        }
+        this.algorithms = algorithms;
+        this.parallelism = parallelism;
+        this.stopCondition = stopCondition;
+        this.format = format;
+    }
+
+    // This method solves every instance in "instances", writing the results to "out" as they come, and
+    // returns them in the order of "instances"
+    public List<Result> run(List<Path> instances, Appendable out) throws InterruptedException {
+        Semaphore pending = new Semaphore(2 * this.parallelism);
+        List<CompletableFuture<Result>> results = new ArrayList<>(instances.size());
+        this.write(out, this.format == Format.CSV ? "instance,cost,gap,feasible,runtime_ms,error" : null);
+        // Resources close in reverse order: loaders are done, and have handed every instance to the
+        // solvers, before these shut down
+        try (ExecutorService solvers = Executors.newFixedThreadPool(this.parallelism);
+             ExecutorService loaders = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path path : instances) {
+                pending.acquire();
+                String name = path.getFileName().toString();
+                results.add(CompletableFuture.supplyAsync(() -> new Instance(path.toString()), loaders)
+                        .thenApplyAsync(instance -> this.solve(name, instance), solvers)
+                        .exceptionally(e -> failed(name, e))
+                        .thenApply(result -> {
+                            this.write(out, this.format(result));
+                            return result;
+                        })
+                        .whenComplete((result, e) -> pending.release()));
+            }
+        }
+        List<Result> solved = new ArrayList<>(results.size());
+        for (CompletableFuture<Result> result : results) {
+            try {
+                solved.add(result.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        return solved;
+    }
+
+    // This method lists the instances of "paths", every directory standing for its regular files in name order
+    public static List<Path> listInstances(List<Path> paths) {
+        List<Path> instances = new ArrayList<>();
+        for (Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                instances.add(path);
+                continue;
+            }
+            try (Stream<Path> files = Files.list(path)) {
+                files.filter(Files::isRegularFile).sorted().forEach(instances::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot list instances in " + path, e);
+            }
+        }
+        return instances;
+    }
+
+    private Result solve(String name, Instance instance) {
+        Algorithm algorithm = this.algorithms.get();
+        long start = System.nanoTime();
+        Solution solution = this.stopCondition == null ? algorithm.run(instance) : algorithm.run(instance, this.stopCondition);
+        Duration runtime = Duration.ofNanos(System.nanoTime() - start);
+        double cost = Evaluator.evaluate(solution, instance);
+        double optimum = instance.getOptimumValue();
+        double gap = optimum > 0 && Double.isFinite(optimum) ? (cost - optimum) / optimum : Double.NaN;
+        return new Result(name, cost, gap, Evaluator.isFeasible(solution, instance), runtime, null);
+    }
+
+    private static Result failed(String name, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        String error = cause.getMessage() == null ? cause.toString() : cause.getMessage();
+        return new Result(name, Double.NaN, Double.NaN, false, Duration.ZERO, error);
+    }
+
+    private String format(Result result) {
+        String cost = !Double.isFinite(result.cost()) ? "" : Double.toString(result.cost());
+        String gap = !Double.isFinite(result.gap()) ? "" : Double.toString(result.gap());
+        long runtime = result.runtime().toMillis();
+        if (this.format == Format.CSV) {
+            return String.join(",", csvField(result.instance()), cost, gap, Boolean.toString(result.feasible()),
+                    Long.toString(runtime), result.error() == null ? "" : csvField(result.error()));
+        }
+        return "{\"instance\":" + jsonString(result.instance())
+                + ",\"cost\":" + (cost.isEmpty() ? "null" : cost)
+                + ",\"gap\":" + (gap.isEmpty() ? "null" : gap)
+                + ",\"feasible\":" + result.feasible()
+                + ",\"runtime_ms\":" + runtime
+                + ",\"error\":" + (result.error() == null ? "null" : jsonString(result.error())) + "}";
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // Results come from every solver thread, so lines are written whole, one at a time (nothing if "line" is null)
+    private void write(Appendable out, String line) {
+        if (line == null) return;
+        synchronized (out) {
+            try {
+                out.append(line).append(System.lineSeparator());
+                if (out instanceof Flushable flushable) {
+                    flushable.flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write the results", e);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String algorithm = "ssga";
+        int threads = Runtime.getRuntime().availableProcessors();
+        StopCondition stopCondition = null;
+        Long seed = null;
+        Format format = Format.CSV;
+        Path output = null;
+        List<Path> paths = new ArrayList<>();
+        Supplier<Algorithm> algorithms;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--algorithm" -> algorithm = value(args, ++i);
+                    case "--threads" -> threads = Integer.parseInt(value(args, ++i));
+                    case "--time-limit" -> stopCondition = StopCondition.timeLimit(
+                            Duration.ofMillis(Math.round(1000 * Double.parseDouble(value(args, ++i)))));
+                    case "--seed" -> seed = Long.parseLong(value(args, ++i));
+                    case "--format" -> format = switch (value(args, ++i)) {
+                        case "csv" -> Format.CSV;
+                        case "jsonl" -> Format.JSON_LINES;
+                        default -> throw new IllegalArgumentException("Unknown format: " + args[i]);
+                    };
+                    case "--output" -> output = Path.of(value(args, ++i));
+                    default -> paths.add(Path.of(args[i]));
+                }
+            }
+            if (paths.isEmpty()) {
+                throw new IllegalArgumentException("No instances given");
+            }
+            algorithms = algorithms(algorithm, seed);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        BatchRunner runner = new BatchRunner(algorithms, threads, stopCondition, format);
+        List<Path> instances = listInstances(paths);
+        PrintStream results = System.out;
+        System.setOut(System.err);
+        if (output == null) {
+            runner.run(instances, results);
+        } else {
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                runner.run(instances, writer);
+            }
+        }
+    }
+
+    // Single-threaded algorithms named "name", all of them with "seed" (a random one if null)
+    private static Supplier<Algorithm> algorithms(String name, Long seed) {
+        return switch (name) {
+            case "aco" -> () -> new Algorithm1(1, seed == null ? ThreadLocalRandom.current().nextLong() : seed);
+            case "ssga" -> () -> new Algorithm2(1, seed == null ? ThreadLocalRandom.current().nextLong() : seed);
+            default -> throw new IllegalArgumentException("Unknown algorithm: " + name);
+        };
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
@@ -0,0 +1,197 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Algorithms.Algorithm2.Individual;
+import es.urjc.grafo.ABII.Algorithms.Algorithm2.Population;
+import es.urjc.grafo.ABII.Model.Instance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.random.RandomGenerator;
+
+/**
+ * Island model of Algorithm2: several populations evolve independently, and every "migrationInterval"
+ * generations each one sends its best individual to its neighbours in the topology. Islands are never
+ * synchronized: every island runs "migrationInterval" generations as a single task, which then submits
+ * itself again, so a pool with fewer threads than islands takes turns among them. Migrants and progress
+ * reports travel through lock-free queues, which islands only poll or offer to. The thread driving the
+ * run is the only one that touches the stop condition: one iteration of the run is a generation of
+ * every island, on average.
+ * Migrants arrive whenever their island sends them, so the result depends on the timing of the threads.
+ */
+final class IslandModel {
+
+    // Outcome of an island generation: its best feasible individual (null if none) or why it failed
+    private record Report(Individual best, Throwable failure) {
+    }
+
+    private final Instance instance;
+    private final Algorithm2.Topology topology;
+    private final int migrationInterval;
+    private final int islandSize;
+    private final double crossoverRate;
+    private final double mutationRate;
+    private final boolean applyLocalSearch;
+
+    private final LinkedTransferQueue<Report> reports = new LinkedTransferQueue<>();
+    private final AtomicBoolean stopped = new AtomicBoolean();
+    private Island[] islands;
+    // Counted down by every island once it stops, after it has been submitted
+    private CountDownLatch finished;
+    private ExecutorService executor;
+
+    IslandModel(Instance instance, Algorithm2.Topology topology, int migrationInterval, int islandSize,
+                double crossoverRate, double mutationRate, boolean applyLocalSearch) {
+        this.instance = instance;
+        this.topology = topology;
+        this.migrationInterval = migrationInterval;
+        this.islandSize = islandSize;
+        this.crossoverRate = crossoverRate;
+        this.mutationRate = mutationRate;
+        this.applyLocalSearch = applyLocalSearch;
+    }
+
+    // This method evolves "numberOfIslands" islands on "parallelism" threads until "tracker" is done, and
+    // returns the best feasible individual found. Like the single population, it throws a
+    // CancellationException if it is interrupted before there is one
+    Individual run(int numberOfIslands, int parallelism, RandomGenerator.SplittableGenerator random,
+                   StopCondition.Tracker tracker, SolutionListener listener) {
+        this.executor = Executors.newFixedThreadPool(Math.min(parallelism, numberOfIslands));
+        Individual best = null;
+        try {
+            // Every island generates its initial population on the pool, with its own generator
+            List<Callable<Island>> initializations = new ArrayList<>(numberOfIslands);
+            for (int i = 0; i < numberOfIslands; i++) {
+                RandomGenerator.SplittableGenerator islandRandom = random.split();
+                initializations.add(() -> new Island(islandRandom));
+            }
+            this.islands = new Island[numberOfIslands];
+            List<Future<Island>> futures = this.executor.invokeAll(initializations);
+            for (int i = 0; i < numberOfIslands; i++) {
+                this.islands[i] = futures.get(i).get();
+                best = Algorithm2.getBetter(best, this.islands[i].population.getPopulationsBest());
+            }
+            this.connect();
+            tracker.addEvaluations((long) numberOfIslands * this.islandSize);
+            tracker.initialSolution(best == null ? Double.POSITIVE_INFINITY : best.getFitness());
+            Algorithm2.notifyBest(best, listener, tracker);
+
+            this.finished = new CountDownLatch(numberOfIslands);
+            for (Island island : this.islands) {
+                this.executor.execute(island);
+            }
+            long generations = 0;
+            while (!tracker.isDone()) {
+                Report report = this.reports.take();
+                if (report.failure() != null) {
+                    throw new IllegalStateException("Failed to evolve an island", report.failure());
+                }
+                best = Algorithm2.getBetter(best, report.best());
+                tracker.addEvaluations(this.islandSize - 1);
+                if (++generations % numberOfIslands == 0
+                        && tracker.iterationDone(best == null ? Double.POSITIVE_INFINITY : best.getFitness())) {
+                    Algorithm2.notifyBest(best, listener, tracker);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Interrupted while waiting for the islands, which is a cancellation of the run
+            Thread.currentThread().interrupt();
+            if (best == null) {
+                throw new CancellationException("Interrupted before any island found a feasible individual");
+            }
+        } catch (ExecutionException e) {
+            // An instance no island can be generated for fails as it does with a single population
+            if (e.getCause() instanceof IllegalArgumentException cause) throw cause;
+            throw new IllegalStateException("Failed to generate an island", e.getCause());
+        } finally {
+            this.stop();
+        }
+        return best;
+    }
+
+    // This method links every island with the ones it sends its migrants to
+    private void connect() {
+        for (int i = 0; i < this.islands.length; i++) {
+            if (this.topology == Algorithm2.Topology.RING) {
+                this.islands[i].neighbours.add(this.islands[(i + 1) % this.islands.length]);
+            } else {
+                for (int j = 0; j < this.islands.length; j++) {
+                    if (j != i) this.islands[i].neighbours.add(this.islands[j]);
+                }
+            }
+        }
+    }
+
+    // This method stops every island and waits until none of them is running
+    private void stop() {
+        this.stopped.set(true);
+        boolean interrupted = false;
+        if (this.finished != null) {
+            while (true) {
+                try {
+                    this.finished.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        this.executor.shutdownNow();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // One island: its population and generator, the migrants sent to it and the islands it sends to
+    private final class Island implements Runnable {
+        private final Population population;
+        private final RandomGenerator.SplittableGenerator random;
+        private final LocalSearch localSearch;
+        private final ConcurrentLinkedQueue<Individual> migrants = new ConcurrentLinkedQueue<>();
+        private final List<Island> neighbours = new ArrayList<>();
+
+        private Island(RandomGenerator.SplittableGenerator random) {
+            this.random = random;
+            this.population = new Population(instance, islandSize, random);
+            this.localSearch = applyLocalSearch ? new LocalSearch(instance) : null;
+        }
+
+        // This method runs "migrationInterval" generations and sends the best individual to the neighbours,
+        // then submits the island again unless the run is over
+        @Override
+        public void run() {
+            try {
+                for (int g = 0; g < migrationInterval && !stopped.get(); g++) {
+                    this.immigrate();
+                    Algorithm2.generation(this.population, this.random, crossoverRate, mutationRate, null, this.localSearch);
+                    reports.offer(new Report(this.population.getPopulationsBest(), null));
+                }
+                Individual best = this.population.getPopulationsBest();
+                if (best != null) {
+                    for (Island neighbour : this.neighbours) {
+                        neighbour.migrants.offer(best);
+                    }
+                }
+            } catch (Throwable e) {
+                reports.offer(new Report(null, e));
+                stopped.set(true);
+            }
+            if (stopped.get()) {
+                finished.countDown();
+            } else {
+                executor.execute(this);
+            }
+        }
+
+        // Migrants replace the worst individuals they are better than. Individuals are never modified once
+        // in a population, so islands can share them
+        private void immigrate() {
+            for (Individual migrant = this.migrants.poll(); migrant != null; migrant = this.migrants.poll()) {
+                if (migrant.getFitness() < this.population.getWorstFitness()) {
+                    this.population.replaceWorst(migrant);
+                }
+            }
+        }
+    }
+}
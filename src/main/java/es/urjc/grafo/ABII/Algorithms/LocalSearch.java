@@ -0,0 +1,318 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.MoveDelta;
+import es.urjc.grafo.ABII.Model.NeighbourLists;
+import es.urjc.grafo.ABII.Model.PackedSolution;
+import es.urjc.grafo.ABII.Model.RouteState;
+import es.urjc.grafo.ABII.Model.Solution;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * First-improvement local search over feasible solutions. Every customer only tries the moves that bring
+ * it next to one of its nearest customers, and customers whose surroundings have not changed since their
+ * last fruitless scan are skipped (don't-look bits). Moves are evaluated in constant time with
+ * {@link Evaluator}, which checks the carrying capacity and the battery, charge stations included, and
+ * charge stations the battery does not need are dropped. The search keeps mutable buffers, so it must
+ * not be shared between threads.
+ */
+public final class LocalSearch {
+
+    public enum Move {
+        // Moves a customer next to a neighbour
+        RELOCATE,
+        // Exchanges a customer with the node before or after a neighbour
+        SWAP,
+        // Reverses the stretch of a route between a customer and a neighbour
+        TWO_OPT,
+        // Exchanges the tails of two routes, linking a customer with a neighbour
+        TWO_OPT_STAR,
+        // Moves a chain of up to "MAX_SEGMENT" nodes starting or ending at a customer next to a neighbour
+        OR_OPT,
+        // Drops the visits to charge stations the battery does not need
+        REMOVE_STATION
+    }
+
+    public static final int DEFAULT_NEIGHBOURS = 10;
+    // Longest chain moved by OR_OPT (shorter ones are RELOCATE moves)
+    private static final int MAX_SEGMENT = 3;
+    // Minimum decrease in distance for a move to be applied
+    private static final double EPSILON = 1e-9;
+
+    private final Instance instance;
+    private final NeighbourLists neighbours;
+    private final Set<Move> moves;
+    // Position of every customer in the tour being improved
+    private final int[] position;
+    // Customers waiting to be scanned (their don't-look bit is off), in a circular queue
+    private final boolean[] active;
+    private final int[] queue;
+    private int queueHead;
+    private int queueSize;
+    // Scratch space to rearrange the tour
+    private int[] buffer = new int[16];
+
+    public LocalSearch(Instance instance) {
+        this(instance, DEFAULT_NEIGHBOURS, EnumSet.allOf(Move.class));
+    }
+
+    public LocalSearch(Instance instance, int numNeighbours, Set<Move> moves) {
+        this.instance = instance;
+        this.neighbours = instance.getNearestCustomers(numNeighbours);
+        this.moves = moves.isEmpty() ? EnumSet.noneOf(Move.class) : EnumSet.copyOf(moves);
+        this.position = new int[instance.getNumberOfCustomers() + 1];
+        this.active = new boolean[instance.getNumberOfCustomers() + 1];
+        this.queue = new int[instance.getNumberOfCustomers() + 1];
+    }
+
+    // This method returns a local optimum reached from "solution" ("solution" itself if it is infeasible or
+    // cannot be improved)
+    public Solution improve(Solution solution) {
+        if (!Evaluator.isFeasible(solution, this.instance)) {
+            return solution;
+        }
+        PackedSolution packed = PackedSolution.of(solution);
+        return this.improve(packed) ? packed.toSolution() : solution;
+    }
+
+    // This method improves a feasible solution in place, returning whether it changed
+    public boolean improve(PackedSolution solution) {
+        RouteState state = new RouteState(solution, this.instance);
+        this.updatePositions(solution);
+        this.queueHead = 0;
+        this.queueSize = 0;
+        for (int c = 2; c <= this.instance.getNumberOfCustomers(); c++) {
+            this.active[c] = false;
+            this.activate(c);
+        }
+        boolean improved = false;
+        while (true) {
+            while (this.queueSize > 0) {
+                int customer = this.queue[this.queueHead];
+                this.queueHead = (this.queueHead + 1) % this.queue.length;
+                this.queueSize--;
+                this.active[customer] = false;
+                if (this.improveCustomer(state, customer)) {
+                    improved = true;
+                }
+            }
+            // Dropping a station wakes up the customers around it
+            if (!this.moves.contains(Move.REMOVE_STATION) || !this.removeStations(state)) break;
+            improved = true;
+        }
+        return improved;
+    }
+
+    // This method applies the first improving move of "customer", returning whether there was one
+    private boolean improveCustomer(RouteState state, int customer) {
+        PackedSolution solution = state.getSolution();
+        int p = this.position[customer];
+        int routeP = state.getRoute(p);
+        for (int rank = 0; rank < this.neighbours.size(customer); rank++) {
+            int q = this.position[this.neighbours.get(customer, rank)];
+            int routeQ = state.getRoute(q);
+            if (this.moves.contains(Move.RELOCATE)) {
+                // After the neighbour, then before it
+                if (q != p && q != p - 1 && this.tryMoveSegment(state, p, 1, q)) return true;
+                if (q != p && q != p + 1 && this.tryMoveSegment(state, p, 1, q - 1)) return true;
+            }
+            if (this.moves.contains(Move.SWAP)) {
+                // With the node before the neighbour, then with the one after it
+                if (q - 1 != p && this.isInterior(solution, routeQ, q - 1) && this.trySwap(state, p, q - 1)) return true;
+                if (q + 1 != p && this.isInterior(solution, routeQ, q + 1) && this.trySwap(state, p, q + 1)) return true;
+            }
+            if (this.moves.contains(Move.TWO_OPT) && routeP == routeQ && Math.abs(p - q) > 1) {
+                // Linking the customer with the neighbour, then their predecessors
+                int first = Math.min(p, q);
+                int last = Math.max(p, q);
+                if (this.tryTwoOpt(state, first, last)) return true;
+                if (this.tryTwoOpt(state, first - 1, last - 1)) return true;
+            }
+            if (this.moves.contains(Move.TWO_OPT_STAR) && routeP != routeQ) {
+                // The neighbour after the customer, then the customer after the neighbour
+                if (this.tryTwoOptStar(state, p, q - 1)) return true;
+                if (this.tryTwoOptStar(state, q, p - 1)) return true;
+            }
+            if (this.moves.contains(Move.OR_OPT)) {
+                for (int length = 2; length <= MAX_SEGMENT; length++) {
+                    // The chain starting at the customer after the neighbour, then the one ending at it before
+                    int last = p + length - 1;
+                    if (this.isInterior(solution, routeP, last) && (q < p - 1 || q > last)
+                            && this.tryMoveSegment(state, p, length, q)) return true;
+                    int first = p - length + 1;
+                    if (this.isInterior(solution, routeP, first) && (q - 1 < first - 1 || q - 1 > p)
+                            && this.tryMoveSegment(state, first, length, q - 1)) return true;
+                }
+            }
+        }
+        if (this.moves.contains(Move.RELOCATE)) {
+            // Empty routes have no customer to be a neighbour of
+            for (int r = 0; r < solution.getNumberOfRoutes(); r++) {
+                if (solution.routeSize(r) == 2 && r != routeP && this.tryMoveSegment(state, p, 1, solution.routeStart(r))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Whether "p" lies strictly inside route "route"
+    private boolean isInterior(PackedSolution solution, int route, int p) {
+        return p > solution.routeStart(route) && p < solution.routeEnd(route) - 1;
+    }
+
+    private boolean tryMoveSegment(RouteState state, int p, int length, int q) {
+        MoveDelta delta = length == 1 ? Evaluator.relocateDelta(state, p, q) : Evaluator.orOptDelta(state, p, length, q);
+        if (!delta.isImproving(EPSILON)) return false;
+        int last = p + length - 1;
+        this.activateAround(state, p - 1, p, last, last + 1, q, q + 1);
+        this.moveSegment(state.getSolution(), state, p, last, q);
+        this.updated(state);
+        return true;
+    }
+
+    private boolean trySwap(RouteState state, int p, int q) {
+        if (!Evaluator.swapDelta(state, p, q).isImproving(EPSILON)) return false;
+        this.activateAround(state, p - 1, p, p + 1, q - 1, q, q + 1);
+        int[] tour = state.getSolution().tour();
+        int aux = tour[p];
+        tour[p] = tour[q];
+        tour[q] = aux;
+        this.updated(state);
+        return true;
+    }
+
+    private boolean tryTwoOpt(RouteState state, int p, int q) {
+        if (!Evaluator.twoOptDelta(state, p, q).isImproving(EPSILON)) return false;
+        this.activateAround(state, p, p + 1, q, q + 1);
+        int[] tour = state.getSolution().tour();
+        for (int i = p + 1, j = q; i < j; i++, j--) {
+            int aux = tour[i];
+            tour[i] = tour[j];
+            tour[j] = aux;
+        }
+        this.updated(state);
+        return true;
+    }
+
+    private boolean tryTwoOptStar(RouteState state, int p, int q) {
+        if (!Evaluator.twoOptStarDelta(state, p, q).isImproving(EPSILON)) return false;
+        this.activateAround(state, p, p + 1, q, q + 1);
+        this.exchangeTails(state.getSolution(), state, Math.min(p, q), Math.max(p, q));
+        this.updated(state);
+        return true;
+    }
+
+    // This method drops every charge station whose removal shortens the solution, returning whether it did
+    private boolean removeStations(RouteState state) {
+        PackedSolution solution = state.getSolution();
+        boolean removed = false;
+        for (int p = 1; p < solution.size() - 1; p++) {
+            int route = state.getRoute(p);
+            if (!this.instance.isChargeStation(solution.get(p)) || !this.isInterior(solution, route, p)) continue;
+            if (Evaluator.removeDelta(state, p).isImproving(EPSILON)) {
+                this.activateAround(state, p - 1, p + 1);
+                int[] tour = solution.tour();
+                System.arraycopy(tour, p + 1, tour, p, solution.size() - p - 1);
+                int[] offsets = solution.offsets();
+                for (int r = route + 1; r < offsets.length; r++) {
+                    offsets[r]--;
+                }
+                this.updated(state);
+                removed = true;
+                p--;
+            }
+        }
+        return removed;
+    }
+
+    // This method moves the positions "first".."last" right after position "q", shifting the routes in between
+    private void moveSegment(PackedSolution solution, RouteState state, int first, int last, int q) {
+        int[] tour = solution.tour();
+        int[] offsets = solution.offsets();
+        int length = last - first + 1;
+        int routeFirst = state.getRoute(first);
+        int routeQ = state.getRoute(q);
+        this.ensureBuffer(length);
+        System.arraycopy(tour, first, this.buffer, 0, length);
+        if (q > last) {
+            System.arraycopy(tour, last + 1, tour, first, q - last);
+            System.arraycopy(this.buffer, 0, tour, q - length + 1, length);
+            for (int r = routeFirst + 1; r <= routeQ; r++) {
+                offsets[r] -= length;
+            }
+        } else {
+            System.arraycopy(tour, q + 1, tour, q + 1 + length, first - q - 1);
+            System.arraycopy(this.buffer, 0, tour, q + 1, length);
+            for (int r = routeQ + 1; r <= routeFirst; r++) {
+                offsets[r] += length;
+            }
+        }
+    }
+
+    // This method exchanges the tails after positions "p" and "q" (p < q) of two routes
+    private void exchangeTails(PackedSolution solution, RouteState state, int p, int q) {
+        int[] tour = solution.tour();
+        int[] offsets = solution.offsets();
+        int routeP = state.getRoute(p);
+        int routeQ = state.getRoute(q);
+        int endP = solution.routeEnd(routeP);
+        int endQ = solution.routeEnd(routeQ);
+        // [tail of P][routes in between][head of Q][tail of Q] becomes [tail of Q][routes in between][head of Q][tail of P]
+        int tailP = endP - p - 1;
+        int tailQ = endQ - q - 1;
+        int length = endQ - p - 1;
+        this.ensureBuffer(length);
+        int size = 0;
+        System.arraycopy(tour, q + 1, this.buffer, size, tailQ);
+        size += tailQ;
+        System.arraycopy(tour, endP, this.buffer, size, q + 1 - endP);
+        size += q + 1 - endP;
+        System.arraycopy(tour, p + 1, this.buffer, size, tailP);
+        System.arraycopy(this.buffer, 0, tour, p + 1, length);
+        for (int r = routeP + 1; r <= routeQ; r++) {
+            offsets[r] += tailQ - tailP;
+        }
+    }
+
+    private void ensureBuffer(int length) {
+        if (this.buffer.length < length) {
+            this.buffer = new int[Math.max(length, 2 * this.buffer.length)];
+        }
+    }
+
+    // This method turns off the don't-look bits of the customers at the given positions (before the move)
+    private void activateAround(RouteState state, int... positions) {
+        for (int p : positions) {
+            if (p >= 0 && p < state.getSolution().size()) {
+                this.activate(state.getSolution().get(p));
+            }
+        }
+    }
+
+    private void activate(int node) {
+        if (node < 2 || node > this.instance.getNumberOfCustomers() || this.active[node]) return;
+        this.active[node] = true;
+        this.queue[(this.queueHead + this.queueSize) % this.queue.length] = node;
+        this.queueSize++;
+    }
+
+    // This method refreshes the route state and the customer positions after a move
+    private void updated(RouteState state) {
+        state.update();
+        this.updatePositions(state.getSolution());
+    }
+
+    private void updatePositions(PackedSolution solution) {
+        int[] tour = solution.tour();
+        for (int p = 0; p < solution.size(); p++) {
+            int node = tour[p];
+            if (node > 1 && node <= this.instance.getNumberOfCustomers()) {
+                this.position[node] = p;
+            }
+        }
+    }
+}
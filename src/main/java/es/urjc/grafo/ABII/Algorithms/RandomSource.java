@@ -0,0 +1,38 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Creates the run-scoped random generators of the algorithms. A run draws every random number from a
+ * single seeded generator, split into independent generators for parallel workers, so that two runs
+ * with the same seed and generator algorithm give the same result.
+ */
+final class RandomSource {
+
+    // Algorithm used when none is given
+    static final String DEFAULT_ALGORITHM = "SplittableRandom";
+
+    private RandomSource() {
+    }
+
+    // This method creates a splittable generator of algorithm "algorithm" seeded with "seed"
+    static RandomGenerator.SplittableGenerator create(String algorithm, long seed) {
+        RandomGeneratorFactory<RandomGenerator> factory;
+        try {
+            factory = RandomGeneratorFactory.of(algorithm);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown random generator algorithm: " + algorithm, e);
+        }
+        if (!factory.isSplittable()) {
+            throw new IllegalArgumentException("Random generator algorithm is not splittable: " + algorithm);
+        }
+        return (RandomGenerator.SplittableGenerator) factory.create(seed);
+    }
+
+    // This method checks that "algorithm" names a splittable generator
+    static String requireSplittable(String algorithm) {
+        create(algorithm, 0);
+        return algorithm;
+    }
+}
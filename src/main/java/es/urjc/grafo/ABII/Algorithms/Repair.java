@@ -0,0 +1,267 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Repair of a decoded solution that leaves customers out, serves them more than once, overloads a vehicle
+ * or runs out of battery. Every route is reduced to the customers it serves, in order, and repeated ones
+ * are dropped. Then customers are taken off the tail of every route until the vehicle can carry the rest and
+ * its battery can make the route, with the stations placed as {@link SplitDecoder} places them. Every
+ * customer left out is finally inserted wherever it adds the least distance, stations included, the largest
+ * demands first. Insertions are priced with their stations unless the distance without stations, which
+ * never costs more, already rules them out. A customer that does not fit in any vehicle takes the place of
+ * one with a smaller demand, which is left out instead, at most as many times as there are customers, so
+ * the work is bounded. The repair is deterministic.
+ * A repair keeps mutable buffers, so it must not be shared between threads (see {@link #of(Instance)}).
+ */
+final class Repair {
+
+    private static final ThreadLocal<Repair> REPAIR = new ThreadLocal<>();
+
+    private final Instance instance;
+    // Customers of every route, in order, how many there are, their demand and the distance of the route,
+    // with and without its stations
+    private final int[][] routes;
+    private final int[] lengths;
+    private final double[] loads;
+    private final double[] costs;
+    private final double[] plainCosts;
+    // Whether every customer is already in a route or left out
+    private final boolean[] seen;
+    // Customers left out, to be inserted
+    private final int[] pending;
+    private int pendingCount;
+    // Route with a customer taken out, and with a customer inserted, being priced
+    private final int[] reduced;
+    private final int[] candidate;
+
+    Repair(Instance instance) {
+        this.instance = instance;
+        int numberOfCustomers = instance.getNumberOfCustomers();
+        this.routes = new int[instance.getNumberOfVehicles()][numberOfCustomers];
+        this.lengths = new int[instance.getNumberOfVehicles()];
+        this.loads = new double[instance.getNumberOfVehicles()];
+        this.costs = new double[instance.getNumberOfVehicles()];
+        this.plainCosts = new double[instance.getNumberOfVehicles()];
+        this.seen = new boolean[numberOfCustomers + 1];
+        this.pending = new int[numberOfCustomers];
+        this.reduced = new int[numberOfCustomers];
+        this.candidate = new int[numberOfCustomers];
+    }
+
+    // This method returns the repair of the calling thread for "instance", so that its buffers are reused
+    static Repair of(Instance instance) {
+        Repair repair = REPAIR.get();
+        if (repair == null || repair.instance != instance) {
+            repair = new Repair(instance);
+            REPAIR.set(repair);
+        }
+        return repair;
+    }
+
+    // This method drops the repair of the calling thread, along with the instance it references
+    static void release() {
+        REPAIR.remove();
+    }
+
+    // This method returns a feasible solution close to "solution" (null if some customer cannot be inserted
+    // in any vehicle)
+    Solution repair(Solution solution) {
+        SplitDecoder decoder = SplitDecoder.of(this.instance);
+        Arrays.fill(this.seen, false);
+        this.pendingCount = 0;
+        for (int r = 0; r < this.routes.length; r++) {
+            this.keepServiceable(r, r < solution.routes().length ? solution.routes()[r] : List.of(), decoder);
+        }
+        for (int customer = 2; customer <= this.instance.getNumberOfCustomers(); customer++) {
+            if (!this.seen[customer]) {
+                this.pending[this.pendingCount++] = customer;
+            }
+        }
+
+        // Largest demands first, as they are the hardest to fit
+        for (int i = 1; i < this.pendingCount; i++) {
+            int customer = this.pending[i];
+            int j = i;
+            for (; j > 0 && this.instance.getDemand(this.pending[j - 1]) < this.instance.getDemand(customer); j--) {
+                this.pending[j] = this.pending[j - 1];
+            }
+            this.pending[j] = customer;
+        }
+        // Swaps are bounded in total, not per customer: the same customer may be swapped in and out again
+        int swaps = 0;
+        for (int i = 0; i < this.pendingCount; ) {
+            int customer = this.pending[i];
+            if (this.insert(customer, decoder)) {
+                i++;
+                continue;
+            }
+            int swapped = swaps < this.pending.length ? this.swapIn(customer, decoder) : -1;
+            if (swapped == -1) {
+                return null;
+            }
+            swaps++;
+            // The customer taken out keeps its place in the order of demands
+            int j = i;
+            for (; j + 1 < this.pendingCount && this.instance.getDemand(this.pending[j + 1]) > this.instance.getDemand(swapped); j++) {
+                this.pending[j] = this.pending[j + 1];
+            }
+            this.pending[j] = swapped;
+        }
+
+        List<Integer>[] repaired = Solution.newRoutes(this.routes.length);
+        for (int r = 0; r < this.routes.length; r++) {
+            repaired[r] = decoder.buildRoute(this.routes[r], this.lengths[r]);
+        }
+        return new Solution(repaired);
+    }
+
+    // This method keeps the customers of "route" as route "r", leaving out the repeated ones and then as many
+    // as needed from the tail for the vehicle to serve the rest
+    private void keepServiceable(int r, List<Integer> route, SplitDecoder decoder) {
+        int[] customers = this.routes[r];
+        int length = 0;
+        double load = 0;
+        for (int node : route) {
+            if (node == 1 || this.instance.isChargeStation(node) || this.seen[node]) continue;
+            this.seen[node] = true;
+            customers[length++] = node;
+            load += this.instance.getDemand(node);
+        }
+        double capacity = this.instance.getCarryingCapacity();
+        while (load > capacity) {
+            int customer = customers[--length];
+            load -= this.instance.getDemand(customer);
+            this.pending[this.pendingCount++] = customer;
+        }
+        double cost = decoder.routeCost(customers, length);
+        while (cost == Double.POSITIVE_INFINITY) {
+            int customer = customers[--length];
+            load -= this.instance.getDemand(customer);
+            this.pending[this.pendingCount++] = customer;
+            cost = decoder.routeCost(customers, length);
+        }
+        this.lengths[r] = length;
+        this.loads[r] = load;
+        this.costs[r] = cost;
+        this.plainCosts[r] = this.plainCost(customers, length);
+    }
+
+    // Distance of the route serving "customers[0, length)" without visiting any station
+    private double plainCost(int[] customers, int length) {
+        double cost = 0;
+        int previous = 1;
+        for (int i = 0; i < length; i++) {
+            cost += this.instance.getDistance(previous, customers[i]);
+            previous = customers[i];
+        }
+        return cost + this.instance.getDistance(previous, 1);
+    }
+
+    // Distance added by visiting "customer" between "customers[position - 1]" and "customers[position]",
+    // the base standing before the first customer and after the last one
+    private double detour(int[] customers, int length, int position, int customer) {
+        int before = position == 0 ? 1 : customers[position - 1];
+        int after = position == length ? 1 : customers[position];
+        return this.instance.getDistance(before, customer) + this.instance.getDistance(customer, after)
+                - this.instance.getDistance(before, after);
+    }
+
+    // This method inserts "customer" where it adds the least distance, returning false if no vehicle can serve it
+    private boolean insert(int customer, SplitDecoder decoder) {
+        double demand = this.instance.getDemand(customer);
+        double capacity = this.instance.getCarryingCapacity();
+        int bestRoute = -1;
+        int bestPosition = -1;
+        double bestDelta = Double.POSITIVE_INFINITY;
+        double bestCost = Double.POSITIVE_INFINITY;
+        boolean emptyTried = false;
+        for (int r = 0; r < this.routes.length; r++) {
+            int length = this.lengths[r];
+            if (this.loads[r] + demand > capacity) continue;
+            // Empty routes are all alike
+            if (length == 0) {
+                if (emptyTried) continue;
+                emptyTried = true;
+            }
+            int[] customers = this.routes[r];
+            for (int position = 0; position <= length; position++) {
+                if (this.plainCosts[r] + this.detour(customers, length, position, customer) - this.costs[r] >= bestDelta) continue;
+                System.arraycopy(customers, 0, this.candidate, 0, position);
+                this.candidate[position] = customer;
+                System.arraycopy(customers, position, this.candidate, position + 1, length - position);
+                double cost = decoder.routeCost(this.candidate, length + 1);
+                if (cost - this.costs[r] < bestDelta) {
+                    bestDelta = cost - this.costs[r];
+                    bestCost = cost;
+                    bestRoute = r;
+                    bestPosition = position;
+                }
+            }
+        }
+        if (bestRoute == -1) return false;
+
+        int[] customers = this.routes[bestRoute];
+        System.arraycopy(customers, bestPosition, customers, bestPosition + 1, this.lengths[bestRoute] - bestPosition);
+        customers[bestPosition] = customer;
+        this.lengths[bestRoute]++;
+        this.loads[bestRoute] += demand;
+        this.costs[bestRoute] = bestCost;
+        this.plainCosts[bestRoute] = this.plainCost(customers, this.lengths[bestRoute]);
+        return true;
+    }
+
+    // This method puts "customer" in the place of a customer with a smaller demand, so that it fits in the
+    // vehicle, choosing the exchange that adds the least distance. It returns the customer taken out (-1 if
+    // there is none)
+    private int swapIn(int customer, SplitDecoder decoder) {
+        double demand = this.instance.getDemand(customer);
+        double capacity = this.instance.getCarryingCapacity();
+        int bestRoute = -1;
+        int bestOut = -1;
+        int bestPosition = -1;
+        double bestDelta = Double.POSITIVE_INFINITY;
+        double bestCost = Double.POSITIVE_INFINITY;
+        for (int r = 0; r < this.routes.length; r++) {
+            int[] customers = this.routes[r];
+            int length = this.lengths[r];
+            for (int out = 0; out < length; out++) {
+                double outDemand = this.instance.getDemand(customers[out]);
+                if (outDemand >= demand || this.loads[r] - outDemand + demand > capacity) continue;
+                System.arraycopy(customers, 0, this.reduced, 0, out);
+                System.arraycopy(customers, out + 1, this.reduced, out, length - out - 1);
+                double plainReduced = this.plainCosts[r] - this.detour(this.reduced, length - 1, out, customers[out]);
+                for (int position = 0; position < length; position++) {
+                    if (plainReduced + this.detour(this.reduced, length - 1, position, customer) - this.costs[r] >= bestDelta) continue;
+                    System.arraycopy(this.reduced, 0, this.candidate, 0, position);
+                    this.candidate[position] = customer;
+                    System.arraycopy(this.reduced, position, this.candidate, position + 1, length - 1 - position);
+                    double cost = decoder.routeCost(this.candidate, length);
+                    if (cost - this.costs[r] < bestDelta) {
+                        bestDelta = cost - this.costs[r];
+                        bestCost = cost;
+                        bestRoute = r;
+                        bestOut = out;
+                        bestPosition = position;
+                    }
+                }
+            }
+        }
+        if (bestRoute == -1) return -1;
+
+        int[] customers = this.routes[bestRoute];
+        int length = this.lengths[bestRoute];
+        int swapped = customers[bestOut];
+        System.arraycopy(customers, bestOut + 1, customers, bestOut, length - bestOut - 1);
+        System.arraycopy(customers, bestPosition, customers, bestPosition + 1, length - 1 - bestPosition);
+        customers[bestPosition] = customer;
+        this.loads[bestRoute] += demand - this.instance.getDemand(swapped);
+        this.costs[bestRoute] = bestCost;
+        this.plainCosts[bestRoute] = this.plainCost(customers, length);
+        return swapped;
+    }
+}
@@ -0,0 +1,31 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.Solution;
+
+import java.time.Duration;
+
+/**
+ * Receives every new best solution found during a run, as soon as the iteration that found it ends.
+ * It is called on the thread that runs the algorithm, so it should return quickly; to stop the run
+ * early, use {@link StopCondition#withCancellation} or interrupt that thread.
+ */
+@FunctionalInterface
+public interface SolutionListener {
+
+    // Listener that ignores every improvement
+    SolutionListener NONE = improvement -> {
+    };
+
+    void onImprovement(Improvement improvement);
+
+    /**
+     * A new best solution
+     * @param solution the solution, which must not be modified
+     * @param cost its cost according to {@link es.urjc.grafo.ABII.Model.Evaluator#evaluate}
+     * @param feasible whether it satisfies every constraint of the instance
+     * @param elapsed time since the run started
+     * @param iteration iteration that found it (0 for the initial solutions)
+     */
+    record Improvement(Solution solution, double cost, boolean feasible, Duration elapsed, long iteration) {
+    }
+}
@@ -0,0 +1,533 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Split of a sequence of customers (a giant tour without the base) into at most one route per vehicle,
+ * Bellman-style: every route serves a contiguous stretch of the sequence, and the stretches are chosen
+ * to minimize the total distance. The battery is recharged by detouring to a charge station between two
+ * consecutive nodes. While splitting, every candidate route is priced in constant time per customer by
+ * recharging only when the next customer (and then the station closest to it) is out of reach, as
+ * Algorithm2's greedy decoding does. The stations of the chosen routes are then placed optimally with a
+ * shortest path over their edges, which never costs more. Routes are bounded by the carrying capacity,
+ * so the decoding is close to linear in the number of customers, and the routes priced without the
+ * vehicle limit are reused when the best split needs more routes than vehicles.
+ * A decoder keeps mutable buffers, so it must not be shared between threads (see {@link #of(Instance)}).
+ */
+final class SplitDecoder {
+
+    // Candidate stations to recharge between two nodes: the one adding the shortest detour (see
+    // Instance#getBestChargeStationBetween), and the closest ones to either node
+    private static final int STATIONS = 3;
+
+    private static final ThreadLocal<SplitDecoder> DECODER = new ThreadLocal<>();
+
+    private final Instance instance;
+    private final int numberOfVehicles;
+    // Sequence being decoded
+    private final int[] sequence;
+    // Energy to reach the station closest to each customer, left in the battery when arriving at it
+    private final double[] reserve;
+    // Ways back to the base through a station from each customer, shortest first: "returnDistance" is
+    // the whole detour and "returnEnergy" the energy to reach the station (infinity if there is none)
+    private final double[] returnDistance;
+    private final double[] returnEnergy;
+
+    // Route being evaluated: "nodes[0]" is the base and "nodes[1..length]" the customers it serves
+    private final int[] nodes;
+    // Distance and energy from "nodes[1]" to "nodes[x]" following the route
+    private final double[] distance;
+    private final double[] energy;
+    // Recharges of the route, "STATIONS" per edge: recharge 0 is the base it starts from, and recharges
+    // "e * STATIONS + c" the candidate stations between "nodes[e - 1]" and "nodes[e]". Each one keeps the
+    // shortest distance at which it can be reached and the previous recharge on that path
+    private final double[] rechargeCost;
+    private final int[] rechargeFrom;
+    private final int[] rechargeStation;
+    // Distance and energy from each recharge to the node after it, minus those from "nodes[1]" to that
+    // node, so that a leg from a recharge to "nodes[x]" costs "key + distance[x]" and "energyKey + energy[x]"
+    private final double[] rechargeKey;
+    private final double[] rechargeEnergyKey;
+    // Recharges are only needed once the battery cannot make the route from the base, and are computed
+    // up to this edge
+    private int readyEdge;
+    // Station visited on every edge of the route (0 if none), once placed by "placeStations"
+    private final int[] stationOn;
+    // Last recharge of the shortest route found by "routeCost"
+    private int endFrom;
+    // Shortest distance and last recharge found by "bestLeg"
+    private double legCost;
+    private int legFrom;
+    // Route being priced while splitting: last node, energy consumed since the last recharge and distance
+    private int pricedNode;
+    private double pricedEnergy;
+    private double pricedCost;
+
+    // Shortest distance to serve the first "j" customers with any number of routes, where the last route
+    // starts and how many routes it takes (the fewest among the shortest)
+    private final double[] freeLabel;
+    private final int[] freeFrom;
+    private final int[] freeRoutes;
+    // Distance of the routes priced by "splitFreely": the one serving "sequence[i, i + length)" is at
+    // "extentStart[i] + length - 1" (infinity if the battery cannot make it), for every "length" up to
+    // "extentCount[i]"
+    private double[] extentCost;
+    private final int[] extentStart;
+    private final int[] extentCount;
+    // Shortest distance to serve the first "j" customers with "t" routes, and where the last route starts
+    private final double[][] label;
+    private final int[][] labelFrom;
+    // Fewest and most routes with a finite label for the first "j" customers
+    private final int[] fewestRoutes;
+    private final int[] mostRoutes;
+    // Where every route of the split starts, and where the last one ends
+    private final int[] routeBounds;
+
+    SplitDecoder(Instance instance) {
+        this.instance = instance;
+        this.numberOfVehicles = instance.getNumberOfVehicles();
+        int numberOfCustomers = instance.getNumberOfCustomers() - 1;
+        this.sequence = new int[numberOfCustomers];
+        this.reserve = new double[numberOfCustomers + 2];
+        this.returnDistance = new double[2 * (numberOfCustomers + 2)];
+        this.returnEnergy = new double[2 * (numberOfCustomers + 2)];
+        for (int customer = 2; customer <= numberOfCustomers + 1; customer++) {
+            this.reserve[customer] = instance.getBatteryConsumption(customer, instance.getClosestChargeStation(customer));
+            this.prepareReturn(customer);
+        }
+        this.nodes = new int[numberOfCustomers + 2];
+        this.distance = new double[numberOfCustomers + 2];
+        this.energy = new double[numberOfCustomers + 2];
+        this.rechargeCost = new double[(numberOfCustomers + 2) * STATIONS];
+        this.rechargeFrom = new int[(numberOfCustomers + 2) * STATIONS];
+        this.rechargeStation = new int[(numberOfCustomers + 2) * STATIONS];
+        this.rechargeKey = new double[(numberOfCustomers + 2) * STATIONS];
+        this.rechargeEnergyKey = new double[(numberOfCustomers + 2) * STATIONS];
+        this.freeLabel = new double[numberOfCustomers + 1];
+        this.freeFrom = new int[numberOfCustomers + 1];
+        this.freeRoutes = new int[numberOfCustomers + 1];
+        this.extentCost = new double[16 * (numberOfCustomers + 1)];
+        this.extentStart = new int[numberOfCustomers + 1];
+        this.extentCount = new int[numberOfCustomers + 1];
+        this.label = new double[this.numberOfVehicles + 1][numberOfCustomers + 1];
+        this.labelFrom = new int[this.numberOfVehicles + 1][numberOfCustomers + 1];
+        this.fewestRoutes = new int[numberOfCustomers + 1];
+        this.mostRoutes = new int[numberOfCustomers + 1];
+        this.routeBounds = new int[this.numberOfVehicles + 1];
+        this.stationOn = new int[numberOfCustomers + 3];
+    }
+
+    // This method returns the decoder of the calling thread for "instance", so that its buffers are reused
+    static SplitDecoder of(Instance instance) {
+        SplitDecoder decoder = DECODER.get();
+        if (decoder == null || decoder.instance != instance) {
+            decoder = new SplitDecoder(instance);
+            DECODER.set(decoder);
+        }
+        return decoder;
+    }
+
+    // This method drops the decoder of the calling thread, along with the instance it references
+    static void release() {
+        DECODER.remove();
+    }
+
+    // This method keeps the two ways back to the base through a station from "customer"
+    private void prepareReturn(int customer) {
+        double battery = this.instance.getBatteryCapacity();
+        int first = 2 * customer;
+        this.returnDistance[first] = this.returnDistance[first + 1] = Double.POSITIVE_INFINITY;
+        this.returnEnergy[first] = this.returnEnergy[first + 1] = Double.POSITIVE_INFINITY;
+        int best = this.instance.getBestChargeStationBetween(customer, 1);
+        int closest = this.instance.getClosestChargeStation(customer);
+        for (int station : new int[]{best, closest}) {
+            if (station == customer || station == 1 || this.instance.getBatteryConsumption(station, 1) > battery) continue;
+            double distance = this.instance.getDistance(customer, station) + this.instance.getDistance(station, 1);
+            double energy = this.instance.getBatteryConsumption(customer, station);
+            if (distance < this.returnDistance[first]) {
+                this.returnDistance[first + 1] = this.returnDistance[first];
+                this.returnEnergy[first + 1] = this.returnEnergy[first];
+                this.returnDistance[first] = distance;
+                this.returnEnergy[first] = energy;
+            } else if (station != best && distance < this.returnDistance[first + 1]) {
+                this.returnDistance[first + 1] = distance;
+                this.returnEnergy[first + 1] = energy;
+            }
+        }
+    }
+
+    // This method returns the best solution serving "customers" in that order (null if they do not fit
+    // in the vehicles)
+    Solution decode(List<Integer> customers) {
+        int m = customers.size();
+        for (int i = 0; i < m; i++) {
+            this.sequence[i] = customers.get(i);
+        }
+        int routes = this.split(m);
+        if (routes == -1) {
+            return null;
+        }
+        List<Integer>[] solution = Solution.newRoutes(this.numberOfVehicles);
+        for (int t = 0; t < routes; t++) {
+            solution[t] = this.buildRoute(this.routeBounds[t], this.routeBounds[t + 1]);
+        }
+        for (int t = routes; t < this.numberOfVehicles; t++) {
+            solution[t] = new ArrayList<>(List.of(1, 1));
+        }
+        return new Solution(solution);
+    }
+
+    // This method returns the distance of the solution "decode" builds from the customers at
+    // "chromosomes[offset...]", one per customer of the instance, without building it (infinity if they
+    // do not fit in the vehicles). Distances are added in the order of Evaluator#evaluate, which gives
+    // the same result
+    double cost(int[] chromosomes, int offset) {
+        int m = this.sequence.length;
+        System.arraycopy(chromosomes, offset, this.sequence, 0, m);
+        int routes = this.split(m);
+        if (routes == -1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double score = 0;
+        for (int t = 0; t < routes; t++) {
+            int length = this.placeStations(this.routeBounds[t], this.routeBounds[t + 1]);
+            int previous = 1;
+            for (int k = 1; k <= length; k++) {
+                score += this.instance.getDistance(previous, this.nodes[k]);
+                previous = this.nodes[k];
+                if (this.stationOn[k + 1] != 0) {
+                    score += this.instance.getDistance(previous, this.stationOn[k + 1]);
+                    previous = this.stationOn[k + 1];
+                }
+            }
+            score += this.instance.getDistance(previous, 1);
+        }
+        for (int t = routes; t < this.numberOfVehicles; t++) {
+            score += this.instance.getDistance(1, 1);
+        }
+        return score;
+    }
+
+    // This method returns the distance of the route serving "customers[0, length)" in that order, with its
+    // stations placed as "decode" places them (infinity if the battery cannot make it)
+    double routeCost(int[] customers, int length) {
+        if (length == 0) {
+            return this.instance.getDistance(1, 1);
+        }
+        this.startRoute();
+        for (int l = 1; l <= length; l++) {
+            this.extendRoute(customers[l - 1], l);
+        }
+        return this.routeCost(length);
+    }
+
+    // This method builds the route serving "customers[0, length)" in that order, placing its stations as
+    // "decode" does
+    List<Integer> buildRoute(int[] customers, int length) {
+        if (length == 0) {
+            return new ArrayList<>(List.of(1, 1));
+        }
+        System.arraycopy(customers, 0, this.sequence, 0, length);
+        return this.buildRoute(0, length);
+    }
+
+    // This method splits the first "m" customers of the sequence, leaving route "t" to serve
+    // "sequence[routeBounds[t], routeBounds[t + 1])". It returns the number of routes (-1 if they do not
+    // fit in the vehicles)
+    private int split(int m) {
+        // Splitting without the vehicle limit is cheaper, and its best split is also the best one within
+        // the limit whenever it fits
+        this.splitFreely(m);
+        if (this.freeLabel[m] == Double.POSITIVE_INFINITY) {
+            return -1;
+        }
+        int routes = this.freeRoutes[m];
+        if (routes <= this.numberOfVehicles) {
+            for (int t = routes, j = m; t > 0; j = this.freeFrom[j], t--) {
+                this.routeBounds[t] = j;
+            }
+            this.routeBounds[0] = 0;
+            return routes;
+        }
+        this.splitLimited(m);
+        routes = 0;
+        for (int t = 1; t <= this.numberOfVehicles; t++) {
+            if (this.label[t][m] < this.label[routes][m]) routes = t;
+        }
+        if (this.label[routes][m] == Double.POSITIVE_INFINITY) {
+            return -1;
+        }
+        for (int t = routes, j = m; t > 0; j = this.labelFrom[t][j], t--) {
+            this.routeBounds[t] = j;
+        }
+        this.routeBounds[0] = 0;
+        return routes;
+    }
+
+    // This method computes the free labels of the first "m" customers of the sequence, keeping the
+    // distance of every route priced
+    private void splitFreely(int m) {
+        Arrays.fill(this.freeLabel, 0, m + 1, Double.POSITIVE_INFINITY);
+        this.freeLabel[0] = 0;
+        this.freeRoutes[0] = 0;
+        double capacity = this.instance.getCarryingCapacity();
+        int extents = 0;
+        for (int i = 0; i < m; i++) {
+            this.extentStart[i] = extents;
+            this.extentCount[i] = 0;
+            if (this.freeLabel[i] == Double.POSITIVE_INFINITY) continue;
+            this.pricedNode = 1;
+            this.pricedEnergy = 0;
+            this.pricedCost = 0;
+            double load = 0;
+            for (int length = 1; i + length <= m; length++) {
+                load += this.instance.getDemand(this.sequence[i + length - 1]);
+                if (load > capacity || !this.pricedVisit(this.sequence[i + length - 1])) break;
+                double cost = this.pricedReturn();
+                if (extents == this.extentCost.length) {
+                    this.extentCost = Arrays.copyOf(this.extentCost, 2 * extents);
+                }
+                this.extentCost[extents++] = cost;
+                this.extentCount[i] = length;
+                int j = i + length;
+                double value = this.freeLabel[i] + cost;
+                if (value < this.freeLabel[j]
+                        || (value == this.freeLabel[j] && this.freeRoutes[i] + 1 < this.freeRoutes[j])) {
+                    this.freeLabel[j] = value;
+                    this.freeFrom[j] = i;
+                    this.freeRoutes[j] = this.freeRoutes[i] + 1;
+                }
+            }
+        }
+    }
+
+    // This method computes the labels of the first "m" customers of the sequence with at most one route
+    // per vehicle, from the routes priced by "splitFreely"
+    private void splitLimited(int m) {
+        for (double[] row : this.label) {
+            Arrays.fill(row, 0, m + 1, Double.POSITIVE_INFINITY);
+        }
+        this.label[0][0] = 0;
+        Arrays.fill(this.fewestRoutes, 0, m + 1, this.numberOfVehicles + 1);
+        Arrays.fill(this.mostRoutes, 0, m + 1, -1);
+        this.fewestRoutes[0] = this.mostRoutes[0] = 0;
+        for (int i = 0; i < m; i++) {
+            // No route can start after the first "i" customers unless they are served by fewer than
+            // "numberOfVehicles" routes
+            int fewest = this.fewestRoutes[i];
+            int most = Math.min(this.mostRoutes[i], this.numberOfVehicles - 1);
+            if (fewest > most) continue;
+            for (int length = 1; length <= this.extentCount[i]; length++) {
+                double cost = this.extentCost[this.extentStart[i] + length - 1];
+                if (cost == Double.POSITIVE_INFINITY) continue;
+                int j = i + length;
+                for (int t = fewest; t <= most; t++) {
+                    if (this.label[t][i] + cost < this.label[t + 1][j]) {
+                        this.label[t + 1][j] = this.label[t][i] + cost;
+                        this.labelFrom[t + 1][j] = i;
+                    }
+                }
+                this.fewestRoutes[j] = Math.min(this.fewestRoutes[j], fewest + 1);
+                this.mostRoutes[j] = Math.max(this.mostRoutes[j], most + 1);
+            }
+        }
+    }
+
+    // This method appends "customer" to the route being priced, returning false if the battery cannot
+    // make it. A station is visited before it if, otherwise, the station closest to it would be out of reach
+    private boolean pricedVisit(int customer) {
+        double battery = this.instance.getBatteryCapacity();
+        double reserve = this.reserve[customer];
+        double energy = this.pricedEnergy + this.instance.getBatteryConsumption(this.pricedNode, customer);
+        if (energy + reserve <= battery) {
+            this.pricedCost += this.instance.getDistance(this.pricedNode, customer);
+            this.pricedEnergy = energy;
+        } else {
+            int station = this.pricedStation(customer, reserve);
+            if (station == -1) return false;
+            this.pricedCost += this.instance.getDistance(this.pricedNode, station) + this.instance.getDistance(station, customer);
+            this.pricedEnergy = this.instance.getBatteryConsumption(station, customer);
+        }
+        this.pricedNode = customer;
+        return true;
+    }
+
+    // This method returns the distance of the route being priced once it goes back to the base
+    // (infinity if the battery cannot make it)
+    private double pricedReturn() {
+        double battery = this.instance.getBatteryCapacity();
+        if (this.pricedEnergy + this.instance.getBatteryConsumption(this.pricedNode, 1) <= battery) {
+            return this.pricedCost + this.instance.getDistance(this.pricedNode, 1);
+        }
+        int first = 2 * this.pricedNode;
+        for (int way = first; way < first + 2; way++) {
+            if (this.pricedEnergy + this.returnEnergy[way] <= battery) return this.pricedCost + this.returnDistance[way];
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    // This method returns the shortest detour through a station from the last priced node to "target",
+    // leaving "reserve" energy on arrival (-1 if neither the best station between them nor the closest
+    // to the last node is in reach)
+    private int pricedStation(int target, double reserve) {
+        double battery = this.instance.getBatteryCapacity();
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        int[] candidates = {this.instance.getBestChargeStationBetween(this.pricedNode, target),
+                this.instance.getClosestChargeStation(this.pricedNode)};
+        for (int station : candidates) {
+            if (station == this.pricedNode || station == target) continue;
+            double distance = this.instance.getDistance(this.pricedNode, station) + this.instance.getDistance(station, target);
+            if (distance < bestDistance
+                    && this.pricedEnergy + this.instance.getBatteryConsumption(this.pricedNode, station) <= battery
+                    && this.instance.getBatteryConsumption(station, target) + reserve <= battery) {
+                best = station;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private void startRoute() {
+        this.nodes[0] = 1;
+        this.rechargeCost[0] = 0;
+        // Nothing to recharge between the base and the first customer
+        Arrays.fill(this.rechargeCost, 1, 2 * STATIONS, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.rechargeKey, 1, 2 * STATIONS, Double.POSITIVE_INFINITY);
+        this.readyEdge = 1;
+    }
+
+    // This method appends "customer" as the "length"-th customer of the route
+    private void extendRoute(int customer, int length) {
+        this.nodes[length] = customer;
+        if (length == 1) {
+            this.distance[1] = 0;
+            this.energy[1] = 0;
+            this.rechargeKey[0] = this.instance.getDistance(1, customer);
+            this.rechargeEnergyKey[0] = this.instance.getBatteryConsumption(1, customer);
+        } else {
+            this.distance[length] = this.distance[length - 1] + this.instance.getDistance(this.nodes[length - 1], customer);
+            this.energy[length] = this.energy[length - 1] + this.instance.getBatteryConsumption(this.nodes[length - 1], customer);
+        }
+    }
+
+    // This method returns the shortest distance of the route serving "nodes[1..length]" and back to the base
+    private double routeCost(int length) {
+        double battery = this.instance.getBatteryCapacity();
+        int last = this.nodes[length];
+        // Without recharging, which is the shortest route whenever the battery makes it
+        this.endFrom = 0;
+        if (this.rechargeEnergyKey[0] + this.energy[length] + this.instance.getBatteryConsumption(last, 1) <= battery) {
+            return this.rechargeKey[0] + this.distance[length] + this.instance.getDistance(last, 1);
+        }
+        for (int edge = this.readyEdge + 1; edge <= length; edge++) {
+            this.reachRecharges(edge, this.nodes[edge]);
+        }
+        this.readyEdge = length;
+
+        // Straight back to the base after the last recharge
+        this.bestLeg(length, 1);
+        double best = this.legCost;
+        this.endFrom = this.legFrom;
+        // Through a last station on the way to the base
+        this.reachRecharges(length + 1, 1);
+        for (int recharge = (length + 1) * STATIONS; recharge < (length + 2) * STATIONS; recharge++) {
+            int station = this.rechargeStation[recharge];
+            double cost = this.rechargeCost[recharge] + this.instance.getDistance(station, 1);
+            if (cost < best && this.instance.getBatteryConsumption(station, 1) <= battery) {
+                best = cost;
+                this.endFrom = recharge;
+            }
+        }
+        return best;
+    }
+
+    // This method computes the shortest distance to the candidate stations of edge "edge", the one
+    // between "nodes[edge - 1]" and "target"
+    private void reachRecharges(int edge, int target) {
+        int from = this.nodes[edge - 1];
+        int first = edge * STATIONS;
+        this.rechargeStation[first] = this.instance.getBestChargeStationBetween(from, target);
+        this.rechargeStation[first + 1] = this.instance.getClosestChargeStation(from);
+        this.rechargeStation[first + 2] = this.instance.getClosestChargeStation(target);
+        for (int recharge = first; recharge < first + STATIONS; recharge++) {
+            int station = this.rechargeStation[recharge];
+            this.rechargeCost[recharge] = Double.POSITIVE_INFINITY;
+            this.rechargeKey[recharge] = Double.POSITIVE_INFINITY;
+            if (station == from || station == target || this.isRepeated(first, recharge)) continue;
+            this.bestLeg(edge - 1, station);
+            this.rechargeCost[recharge] = this.legCost;
+            this.rechargeFrom[recharge] = this.legFrom;
+            // The last edge of a route leads to the base, so there is no leg after it to prepare
+            if (target != 1) {
+                this.rechargeKey[recharge] = this.legCost + this.instance.getDistance(station, target) - this.distance[edge];
+                this.rechargeEnergyKey[recharge] = this.instance.getBatteryConsumption(station, target) - this.energy[edge];
+            }
+        }
+    }
+
+    // Whether the station of "recharge" is also an earlier candidate of the same edge
+    private boolean isRepeated(int first, int recharge) {
+        for (int previous = first; previous < recharge; previous++) {
+            if (this.rechargeStation[previous] == this.rechargeStation[recharge]) return true;
+        }
+        return false;
+    }
+
+    // This method finds the shortest way of reaching "target" right after "nodes[last]", going straight
+    // from the last recharge through every customer in between ("legCost" is infinity if there is none)
+    private void bestLeg(int last, int target) {
+        double battery = this.instance.getBatteryCapacity();
+        // Energy left for the stretch from the last recharge to "nodes[1]"
+        double threshold = battery - this.energy[last] - this.instance.getBatteryConsumption(this.nodes[last], target);
+        double best = Double.POSITIVE_INFINITY;
+        for (int edge = last; edge >= 0; edge--) {
+            if (this.energy[last] - this.energy[Math.max(edge, 1)] > battery) break;
+            for (int recharge = edge * STATIONS; recharge < (edge + 1) * STATIONS; recharge++) {
+                if (this.rechargeKey[recharge] < best && this.rechargeEnergyKey[recharge] <= threshold) {
+                    best = this.rechargeKey[recharge];
+                    this.legFrom = recharge;
+                }
+            }
+        }
+        this.legCost = best + this.distance[last] + this.instance.getDistance(this.nodes[last], target);
+    }
+
+    // This method places the stations of the shortest route serving "sequence[from, to)", leaving its
+    // customers in "nodes[1..length]" and the station of every edge in "stationOn" (0 if none). It returns
+    // the number of customers
+    private int placeStations(int from, int to) {
+        int length = to - from;
+        this.startRoute();
+        for (int l = 1; l <= length; l++) {
+            this.extendRoute(this.sequence[from + l - 1], l);
+        }
+        this.routeCost(length);
+        // Walk back from the last recharge
+        Arrays.fill(this.stationOn, 0, length + 2, 0);
+        for (int recharge = this.endFrom; recharge >= STATIONS; recharge = this.rechargeFrom[recharge]) {
+            this.stationOn[recharge / STATIONS] = this.rechargeStation[recharge];
+        }
+        return length;
+    }
+
+    // This method builds the shortest route serving "sequence[from, to)", placing its stations optimally
+    private List<Integer> buildRoute(int from, int to) {
+        int length = this.placeStations(from, to);
+        List<Integer> route = new ArrayList<>(length + 2);
+        route.add(1);
+        for (int k = 1; k <= length; k++) {
+            route.add(this.nodes[k]);
+            if (this.stationOn[k + 1] != 0) {
+                route.add(this.stationOn[k + 1]);
+            }
+        }
+        route.add(1);
+        return route;
+    }
+}
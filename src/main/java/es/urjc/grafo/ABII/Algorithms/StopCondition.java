@@ -0,0 +1,166 @@
+package es.urjc.grafo.ABII.Algorithms;
+
+import es.urjc.grafo.ABII.Model.Instance;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * When an algorithm must stop: after a number of iterations, a wall-clock budget, a number of evaluated
+ * solutions, a number of iterations without improvement or once the best solution is close enough to
+ * the optimum of the instance, whichever happens first. A run also stops when it is cancelled, either
+ * through {@link #withCancellation} or by interrupting the thread that runs it. Conditions are immutable
+ * and can be reused across runs; every run keeps its own progress in a {@link Tracker}.
+ * An "iteration" is an ACO iteration or an SSGA generation, and an "evaluation" a candidate solution built.
+ */
+public final class StopCondition {
+
+    private final long maxIterations;
+    private final long maxNanos;
+    private final long maxEvaluations;
+    private final long maxStagnation;
+    // Relative gap to the optimum, (cost - optimum) / optimum, at which the run stops (negative if disabled)
+    private final double targetGap;
+    // Polled on every check, the run stops once it returns true
+    private final BooleanSupplier cancelled;
+
+    // Starting point of the factory methods, it never stops
+    private static final StopCondition UNBOUNDED = new StopCondition(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, -1, () -> false);
+
+    private StopCondition(long maxIterations, long maxNanos, long maxEvaluations, long maxStagnation, double targetGap,
+                          BooleanSupplier cancelled) {
+        this.maxIterations = maxIterations;
+        this.maxNanos = maxNanos;
+        this.maxEvaluations = maxEvaluations;
+        this.maxStagnation = maxStagnation;
+        this.targetGap = targetGap;
+        this.cancelled = cancelled;
+    }
+
+    public static StopCondition iterations(long maxIterations) {
+        return UNBOUNDED.withIterations(maxIterations);
+    }
+
+    public static StopCondition timeLimit(Duration timeLimit) {
+        return UNBOUNDED.withTimeLimit(timeLimit);
+    }
+
+    public static StopCondition evaluations(long maxEvaluations) {
+        return UNBOUNDED.withEvaluations(maxEvaluations);
+    }
+
+    public StopCondition withIterations(long maxIterations) {
+        return new StopCondition(requirePositive(maxIterations, "maxIterations"), maxNanos, maxEvaluations, maxStagnation, targetGap, cancelled);
+    }
+
+    public StopCondition withTimeLimit(Duration timeLimit) {
+        long nanos = timeLimit.compareTo(Duration.ofNanos(Long.MAX_VALUE)) >= 0 ? Long.MAX_VALUE : timeLimit.toNanos();
+        return new StopCondition(maxIterations, requirePositive(nanos, "timeLimit"), maxEvaluations, maxStagnation, targetGap, cancelled);
+    }
+
+    public StopCondition withEvaluations(long maxEvaluations) {
+        return new StopCondition(maxIterations, maxNanos, requirePositive(maxEvaluations, "maxEvaluations"), maxStagnation, targetGap, cancelled);
+    }
+
+    // Stops after "maxStagnation" consecutive iterations without improving the best solution
+    public StopCondition withStagnation(long maxStagnation) {
+        return new StopCondition(maxIterations, maxNanos, maxEvaluations, requirePositive(maxStagnation, "maxStagnation"), targetGap, cancelled);
+    }
+
+    // Stops once the best solution is within "targetGap" (e.g. 0.05 for 5%) of the optimum of the instance
+    public StopCondition withTargetGap(double targetGap) {
+        if (!(targetGap >= 0)) {
+            throw new IllegalArgumentException("targetGap must not be negative: " + targetGap);
+        }
+        return new StopCondition(maxIterations, maxNanos, maxEvaluations, maxStagnation, targetGap, cancelled);
+    }
+
+    // Stops once "cancelled" returns true (e.g. "flag::get" on an AtomicBoolean set by a supervisor)
+    public StopCondition withCancellation(BooleanSupplier cancelled) {
+        return new StopCondition(maxIterations, maxNanos, maxEvaluations, maxStagnation, targetGap, cancelled);
+    }
+
+    private static long requirePositive(long value, String name) {
+        if (value < 1) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    // This method starts tracking a run on "instance"
+    public Tracker start(Instance instance) {
+        return new Tracker(this, instance.getOptimumValue());
+    }
+
+    /**
+     * Progress of a single run. The algorithm reports every evaluation and the cost of its best solution
+     * at the end of every iteration, and checks {@link #isDone()} before starting the next one.
+     * Not thread-safe: it must be used from the thread that drives the run.
+     */
+    public static final class Tracker {
+        private final StopCondition condition;
+        private final long startNanos;
+        // Cost at which the target gap is reached (negative infinity if disabled or the optimum is unknown)
+        private final double targetCost;
+        private long iterations;
+        private long evaluations;
+        private long stagnation;
+        private double bestCost = Double.POSITIVE_INFINITY;
+
+        private Tracker(StopCondition condition, double optimumValue) {
+            this.condition = condition;
+            this.startNanos = System.nanoTime();
+            boolean knownOptimum = optimumValue > 0 && Double.isFinite(optimumValue);
+            this.targetCost = condition.targetGap >= 0 && knownOptimum
+                    ? optimumValue * (1 + condition.targetGap) : Double.NEGATIVE_INFINITY;
+        }
+
+        public void addEvaluations(long count) {
+            this.evaluations += count;
+        }
+
+        // This method records the cost of the best solution built before the first iteration
+        public void initialSolution(double bestCost) {
+            this.bestCost = Math.min(this.bestCost, bestCost);
+        }
+
+        // This method records the end of an iteration, "bestCost" being the cost of the best solution so far.
+        // It returns whether the iteration improved the best solution
+        public boolean iterationDone(double bestCost) {
+            this.iterations++;
+            if (bestCost < this.bestCost) {
+                this.bestCost = bestCost;
+                this.stagnation = 0;
+                return true;
+            }
+            this.stagnation++;
+            return false;
+        }
+
+        public boolean isDone() {
+            return this.iterations >= this.condition.maxIterations
+                    || this.evaluations >= this.condition.maxEvaluations
+                    || this.stagnation >= this.condition.maxStagnation
+                    || this.bestCost <= this.targetCost
+                    || (this.condition.maxNanos != Long.MAX_VALUE && this.getElapsedNanos() >= this.condition.maxNanos)
+                    || Thread.currentThread().isInterrupted()
+                    || this.condition.cancelled.getAsBoolean();
+        }
+
+        public long getIterations() {
+            return iterations;
+        }
+
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        public long getElapsedNanos() {
+            return System.nanoTime() - this.startNanos;
+        }
+
+        public Duration getElapsed() {
+            return Duration.ofNanos(this.getElapsedNanos());
+        }
+    }
+}
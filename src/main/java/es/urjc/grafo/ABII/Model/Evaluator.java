@@ -1,10 +1,10 @@
 package es.urjc.grafo.ABII.Model;
 
-import java.util.HashSet;
-import java.util.Set;
-
 public class Evaluator {
 
+    // Each thread reuses its own checker buffers
+    private static final ThreadLocal<FeasibilityChecker> CHECKER = ThreadLocal.withInitial(FeasibilityChecker::new);
+
     public static double evaluate(Solution solution, Instance instance) {
         double score = 0;
         for (int i = 0; i < solution.routes().length; i++) {
@@ -15,64 +15,295 @@ public class Evaluator {
         return score;
     }
 
+    public static double evaluate(PackedSolution solution, Instance instance) {
+        int[] tour = solution.tour();
+        double score = 0;
+        for (int r = 0; r < solution.getNumberOfRoutes(); r++) {
+            for (int p = solution.routeStart(r) + 1; p < solution.routeEnd(r); p++) {
+                score += instance.getDistance(tour[p - 1], tour[p]);
+            }
+        }
+        return score;
+    }
+
     public static boolean isFeasible(Solution solution, Instance instance) {
-        if (solution.routes().length != instance.getNumberOfVehicles()) {
-            return false;
+        return CHECKER.get().isFeasible(solution, instance);
+    }
+
+    public static boolean isFeasible(PackedSolution solution, Instance instance) {
+        return CHECKER.get().isFeasible(solution, instance);
+    }
+
+    // This method returns the first violated constraint of the solution, if any
+    public static FeasibilityReport checkFeasibility(Solution solution, Instance instance) {
+        return CHECKER.get().check(solution, instance);
+    }
+
+    public static FeasibilityReport checkFeasibility(PackedSolution solution, Instance instance) {
+        return CHECKER.get().check(solution, instance);
+    }
+
+    // -------- Move evaluation -------- //
+    // Positions refer to the packed solution of "state". Every method runs in constant time and assumes
+    // the parts of the routes that the move does not modify are feasible already.
+
+    /**
+     * Exchanges the nodes at positions "p" and "q" (same or different routes)
+     */
+    public static MoveDelta swapDelta(RouteState state, int p, int q) {
+        if (p > q) {
+            int aux = p;
+            p = q;
+            q = aux;
         }
-        // Each client is visited only once
-        Set<Integer> visitedCustomers = new HashSet<>(instance.getNumberOfCustomers());
-        for (int i = 0; i < solution.routes().length; i++) {
-            for (int j = 0; j < solution.routes()[i].size(); j++) {
-                int client = solution.routes()[i].get(j);
-                if (client != 1 && !instance.isChargeStation(client)) {
-                    if (visitedCustomers.contains(client)) {
-                        return false;
-                    }
-                    visitedCustomers.add(client);
-                }
+        requireInterior(state, p, p);
+        requireInterior(state, q, q);
+        if (p == q) {
+            throw new IllegalArgumentException("Cannot swap position " + p + " with itself");
+        }
+        Instance instance = state.getInstance();
+        PackedSolution solution = state.getSolution();
+        int[] tour = solution.tour();
+        int a = tour[p];
+        int b = tour[q];
+        double delta;
+        if (q == p + 1) {
+            delta = instance.getDistance(tour[p - 1], b) + instance.getDistance(b, a) + instance.getDistance(a, tour[q + 1])
+                    - instance.getDistance(tour[p - 1], a) - instance.getDistance(a, b) - instance.getDistance(b, tour[q + 1]);
+        } else {
+            delta = instance.getDistance(tour[p - 1], b) + instance.getDistance(b, tour[p + 1])
+                    + instance.getDistance(tour[q - 1], a) + instance.getDistance(a, tour[q + 1])
+                    - instance.getDistance(tour[p - 1], a) - instance.getDistance(a, tour[p + 1])
+                    - instance.getDistance(tour[q - 1], b) - instance.getDistance(b, tour[q + 1]);
+        }
+        int routeP = state.getRoute(p);
+        int routeQ = state.getRoute(q);
+        double capacity = instance.getCarryingCapacity();
+        if (routeP == routeQ) {
+            state.begin(p - 1);
+            state.then(q, q, true);
+            state.then(p + 1, q - 1, true);
+            state.then(p, p, true);
+            state.then(q + 1, solution.routeEnd(routeP) - 1, true);
+            return new MoveDelta(delta, state.getRouteLoad(routeP) <= capacity, state.feasible());
+        }
+        double demandA = instance.getDemand(a);
+        double demandB = instance.getDemand(b);
+        boolean load = state.getRouteLoad(routeP) - demandA + demandB <= capacity
+                && state.getRouteLoad(routeQ) - demandB + demandA <= capacity;
+        state.begin(p - 1);
+        state.then(q, q, true);
+        state.then(p + 1, solution.routeEnd(routeP) - 1, true);
+        boolean battery = state.feasible();
+        state.begin(q - 1);
+        state.then(p, p, true);
+        state.then(q + 1, solution.routeEnd(routeQ) - 1, true);
+        return new MoveDelta(delta, load, battery && state.feasible());
+    }
+
+    /**
+     * Moves the node at position "p" right after position "q" (same or different routes)
+     */
+    public static MoveDelta relocateDelta(RouteState state, int p, int q) {
+        requireInterior(state, p, p);
+        PackedSolution solution = state.getSolution();
+        int routeP = state.getRoute(p);
+        int routeQ = state.getRoute(q);
+        if (q == p || q == p - 1 || q >= solution.routeEnd(routeQ) - 1) {
+            throw new IllegalArgumentException("Cannot move position " + p + " after position " + q);
+        }
+        Instance instance = state.getInstance();
+        int[] tour = solution.tour();
+        int u = tour[p];
+        double delta = instance.getDistance(tour[p - 1], tour[p + 1]) - instance.getDistance(tour[p - 1], u) - instance.getDistance(u, tour[p + 1])
+                + instance.getDistance(tour[q], u) + instance.getDistance(u, tour[q + 1]) - instance.getDistance(tour[q], tour[q + 1]);
+        double capacity = instance.getCarryingCapacity();
+        if (routeP == routeQ) {
+            if (q < p) {
+                state.begin(q);
+                state.then(p, p, true);
+                state.then(q + 1, p - 1, true);
+                state.then(p + 1, solution.routeEnd(routeP) - 1, true);
+            } else {
+                state.begin(p - 1);
+                state.then(p + 1, q, true);
+                state.then(p, p, true);
+                state.then(q + 1, solution.routeEnd(routeP) - 1, true);
             }
+            return new MoveDelta(delta, state.getRouteLoad(routeP) <= capacity, state.feasible());
         }
+        double demand = instance.getDemand(u);
+        boolean load = state.getRouteLoad(routeP) - demand <= capacity && state.getRouteLoad(routeQ) + demand <= capacity;
+        state.begin(p - 1);
+        state.then(p + 1, solution.routeEnd(routeP) - 1, true);
+        boolean battery = state.feasible();
+        state.begin(q);
+        state.then(p, p, true);
+        state.then(q + 1, solution.routeEnd(routeQ) - 1, true);
+        return new MoveDelta(delta, load, battery && state.feasible());
+    }
 
+    /**
+     * Moves the "length" positions starting at "p" right after position "q" (same or different routes),
+     * keeping their orientation
+     */
+    public static MoveDelta orOptDelta(RouteState state, int p, int length, int q) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Invalid or-opt length " + length);
+        }
+        requireInterior(state, p, p + length - 1);
+        PackedSolution solution = state.getSolution();
+        int routeP = state.getRoute(p);
+        int routeQ = state.getRoute(q);
+        if (routeP != routeQ) {
+            return crossExchangeDelta(state, p, length, q + 1, 0);
+        }
+        int last = p + length - 1;
+        if ((q >= p - 1 && q <= last) || q >= solution.routeEnd(routeQ) - 1) {
+            throw new IllegalArgumentException("Cannot move positions " + p + ".." + last + " after position " + q);
+        }
+        Instance instance = state.getInstance();
+        int[] tour = solution.tour();
+        double delta = instance.getDistance(tour[p - 1], tour[last + 1]) - instance.getDistance(tour[p - 1], tour[p]) - instance.getDistance(tour[last], tour[last + 1])
+                + instance.getDistance(tour[q], tour[p]) + instance.getDistance(tour[last], tour[q + 1]) - instance.getDistance(tour[q], tour[q + 1]);
+        if (q < p) {
+            state.begin(q);
+            state.then(p, last, true);
+            state.then(q + 1, p - 1, true);
+            state.then(last + 1, solution.routeEnd(routeP) - 1, true);
+        } else {
+            state.begin(p - 1);
+            state.then(last + 1, q, true);
+            state.then(p, last, true);
+            state.then(q + 1, solution.routeEnd(routeP) - 1, true);
+        }
+        return new MoveDelta(delta, state.getRouteLoad(routeP) <= instance.getCarryingCapacity(), state.feasible());
+    }
 
-        // Each client is visited
-        if (visitedCustomers.size() != instance.getNumberOfCustomers() - 1) return false;
+    /**
+     * Removes the node at position "p" from its route (meant for charge stations, as customers must be served)
+     */
+    public static MoveDelta removeDelta(RouteState state, int p) {
+        requireInterior(state, p, p);
+        Instance instance = state.getInstance();
+        PackedSolution solution = state.getSolution();
+        int route = state.getRoute(p);
+        int[] tour = solution.tour();
+        double delta = instance.getDistance(tour[p - 1], tour[p + 1])
+                - instance.getDistance(tour[p - 1], tour[p]) - instance.getDistance(tour[p], tour[p + 1]);
+        state.begin(p - 1);
+        state.then(p + 1, solution.routeEnd(route) - 1, true);
+        boolean load = state.getRouteLoad(route) - instance.getDemand(tour[p]) <= instance.getCarryingCapacity();
+        return new MoveDelta(delta, load, state.feasible());
+    }
 
-        // Routes start and end at base
-        for (int i = 0; i < solution.routes().length; i++) {
-            if (solution.routes()[i].getFirst() != 1 || solution.routes()[i].getLast() != 1) {
-                return false;
-            }
+    /**
+     * Reverses the positions from "p + 1" to "q" of a route (replacing edges (p, p + 1) and (q, q + 1)
+     * with (p, q) and (p + 1, q + 1))
+     */
+    public static MoveDelta twoOptDelta(RouteState state, int p, int q) {
+        PackedSolution solution = state.getSolution();
+        int route = state.getRoute(p);
+        if (q <= p || state.getRoute(q) != route || q >= solution.routeEnd(route) - 1) {
+            throw new IllegalArgumentException("Invalid 2-opt positions " + p + " and " + q);
         }
+        Instance instance = state.getInstance();
+        int[] tour = solution.tour();
+        double delta = instance.getDistance(tour[p], tour[q]) + instance.getDistance(tour[p + 1], tour[q + 1])
+                - instance.getDistance(tour[p], tour[p + 1]) - instance.getDistance(tour[q], tour[q + 1]);
+        state.begin(p);
+        state.then(p + 1, q, false);
+        state.then(q + 1, solution.routeEnd(route) - 1, true);
+        return new MoveDelta(delta, state.getRouteLoad(route) <= instance.getCarryingCapacity(), state.feasible());
+    }
 
-        // For each route, total demand does not exceed capacity of vehicles
-        for (int i = 0; i < solution.routes().length; i++) {
-            double totalDemand = 0;
-            for (int j = 0; j < solution.routes()[i].size(); j++) {
-                totalDemand += instance.isChargeStation(solution.routes()[i].get(j)) ? 0 : instance.getDemand(solution.routes()[i].get(j));
-            }
-            if (totalDemand > instance.getCarryingCapacity()) {
-                return false;
-            }
+    /**
+     * Exchanges the tails of two routes: the positions after "p" move to the route of "q" and vice versa
+     */
+    public static MoveDelta twoOptStarDelta(RouteState state, int p, int q) {
+        PackedSolution solution = state.getSolution();
+        int routeP = state.getRoute(p);
+        int routeQ = state.getRoute(q);
+        if (routeP == routeQ || p >= solution.routeEnd(routeP) - 1 || q >= solution.routeEnd(routeQ) - 1) {
+            throw new IllegalArgumentException("Invalid 2-opt* positions " + p + " and " + q);
         }
+        Instance instance = state.getInstance();
+        int[] tour = solution.tour();
+        int endP = solution.routeEnd(routeP) - 1;
+        int endQ = solution.routeEnd(routeQ) - 1;
+        double delta = instance.getDistance(tour[p], tour[q + 1]) + instance.getDistance(tour[q], tour[p + 1])
+                - instance.getDistance(tour[p], tour[p + 1]) - instance.getDistance(tour[q], tour[q + 1]);
+        double capacity = instance.getCarryingCapacity();
+        boolean load = state.getLoad(solution.routeStart(routeP), p) + state.getLoad(q + 1, endQ) <= capacity
+                && state.getLoad(solution.routeStart(routeQ), q) + state.getLoad(p + 1, endP) <= capacity;
+        state.begin(p);
+        state.then(q + 1, endQ, true);
+        boolean battery = state.feasible();
+        state.begin(q);
+        state.then(p + 1, endP, true);
+        return new MoveDelta(delta, load, battery && state.feasible());
+    }
 
-        // Battery is never consumed completely
-        for (int i = 0; i < solution.routes().length; i++) {
-            double battery = instance.getBatteryCapacity();
-            for (int j = 0; j < solution.routes()[i].size(); j++) {
-                int client = solution.routes()[i].get(j);
-                if (client == 1 || instance.isChargeStation(client)) {
-                    battery = instance.getBatteryCapacity();
-                }
-                else {
-                    battery -= instance.getH() * instance.getDistance(solution.routes()[i].get(j-1), client);
-                }
-                if (battery < 0) {
-                    return false;
-                }
-            }
+    /**
+     * Exchanges the "lengthP" positions starting at "p" with the "lengthQ" positions starting at "q",
+     * keeping their orientation. Both segments belong to different routes and one of them may be empty,
+     * in which case the other one is just moved before "p" or "q".
+     */
+    public static MoveDelta crossExchangeDelta(RouteState state, int p, int lengthP, int q, int lengthQ) {
+        PackedSolution solution = state.getSolution();
+        if (lengthP < 0 || lengthQ < 0 || lengthP + lengthQ == 0) {
+            throw new IllegalArgumentException("Invalid cross exchange lengths " + lengthP + " and " + lengthQ);
+        }
+        requireInterior(state, p, p + lengthP - 1);
+        requireInterior(state, q, q + lengthQ - 1);
+        int routeP = state.getRoute(p);
+        int routeQ = state.getRoute(q);
+        if (routeP == routeQ) {
+            throw new IllegalArgumentException("Cross exchange segments must belong to different routes");
         }
+        Instance instance = state.getInstance();
+        int[] tour = solution.tour();
+        int lastP = p + lengthP - 1;
+        int lastQ = q + lengthQ - 1;
+        double delta = segmentCost(instance, tour, tour[p - 1], tour[p + lengthP], q, lastQ)
+                - segmentCost(instance, tour, tour[p - 1], tour[p + lengthP], p, lastP)
+                + segmentCost(instance, tour, tour[q - 1], tour[q + lengthQ], p, lastP)
+                - segmentCost(instance, tour, tour[q - 1], tour[q + lengthQ], q, lastQ);
+        double capacity = instance.getCarryingCapacity();
+        double loadP = state.getLoad(p, lastP);
+        double loadQ = state.getLoad(q, lastQ);
+        boolean load = state.getRouteLoad(routeP) - loadP + loadQ <= capacity
+                && state.getRouteLoad(routeQ) - loadQ + loadP <= capacity;
+        state.begin(p - 1);
+        state.then(q, lastQ, true);
+        state.then(p + lengthP, solution.routeEnd(routeP) - 1, true);
+        boolean battery = state.feasible();
+        state.begin(q - 1);
+        state.then(p, lastP, true);
+        state.then(q + lengthQ, solution.routeEnd(routeQ) - 1, true);
+        return new MoveDelta(delta, load, battery && state.feasible());
+    }
 
-        return true;
+    // Cost of the edges linking the segment "first".."last" (possibly empty) between nodes "before" and "after"
+    private static double segmentCost(Instance instance, int[] tour, int before, int after, int first, int last) {
+        if (last < first) {
+            return instance.getDistance(before, after);
+        }
+        return instance.getDistance(before, tour[first]) + instance.getDistance(tour[last], after);
+    }
+
+    // This method checks that the positions "first".."last" lie strictly inside a single route
+    // (an empty segment stands for the insertion point right before "first")
+    private static void requireInterior(RouteState state, int first, int last) {
+        PackedSolution solution = state.getSolution();
+        if (first < 0 || first >= solution.size() || last >= solution.size() - 1) {
+            throw new IllegalArgumentException("Positions " + first + ".." + last + " are not inside a route");
+        }
+        int route = state.getRoute(first);
+        int lastAllowed = last < first ? solution.routeEnd(route) - 1 : solution.routeEnd(route) - 2;
+        if (first == solution.routeStart(route) || Math.max(first, last) > lastAllowed) {
+            throw new IllegalArgumentException("Positions " + first + ".." + last + " are not inside a route");
+        }
     }
 
     public static boolean isBetter(Solution solution1, Solution solution2, Instance instance) {
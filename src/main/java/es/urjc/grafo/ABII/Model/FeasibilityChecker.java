@@ -0,0 +1,173 @@
+package es.urjc.grafo.ABII.Model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single-pass feasibility checker. Every route is walked once, checking the endpoints, the served
+ * customers (on a reusable bitset), the load and the battery together, and the check stops at the first
+ * violation. The battery must last until the vehicle reaches each node, charge stations included.
+ * A checker keeps mutable buffers, so it must not be shared between threads.
+ */
+public final class FeasibilityChecker {
+
+    // Served customers, one bit per node id
+    private long[] served = new long[0];
+    private int servedCount;
+    // Nodes of the route being checked when it comes from a Solution
+    private int[] routeBuffer = new int[16];
+
+    // Details of the last violation found
+    private FeasibilityReport.Violation violation;
+    private int violationRoute;
+    private int violationPosition;
+    private int violationNode;
+    private double loadExcess;
+    private double batteryExcess;
+
+    public boolean isFeasible(Solution solution, Instance instance) {
+        return this.run(solution, instance, false) == FeasibilityReport.Violation.NONE;
+    }
+
+    public boolean isFeasible(PackedSolution solution, Instance instance) {
+        return this.run(solution, instance, false) == FeasibilityReport.Violation.NONE;
+    }
+
+    public FeasibilityReport check(Solution solution, Instance instance) {
+        return this.report(this.run(solution, instance, true));
+    }
+
+    public FeasibilityReport check(PackedSolution solution, Instance instance) {
+        return this.report(this.run(solution, instance, true));
+    }
+
+    private FeasibilityReport.Violation run(Solution solution, Instance instance, boolean report) {
+        List<Integer>[] routes = solution.routes();
+        if (!this.begin(routes.length, instance)) return this.violation;
+        for (int r = 0; r < routes.length; r++) {
+            List<Integer> route = routes[r];
+            if (this.routeBuffer.length < route.size()) {
+                this.routeBuffer = new int[Math.max(route.size(), 2 * this.routeBuffer.length)];
+            }
+            int size = 0;
+            for (int node : route) {
+                this.routeBuffer[size++] = node;
+            }
+            if (!this.checkRoute(this.routeBuffer, 0, size, r, instance, report)) return this.violation;
+        }
+        return this.end(instance);
+    }
+
+    private FeasibilityReport.Violation run(PackedSolution solution, Instance instance, boolean report) {
+        if (!this.begin(solution.getNumberOfRoutes(), instance)) return this.violation;
+        for (int r = 0; r < solution.getNumberOfRoutes(); r++) {
+            if (!this.checkRoute(solution.tour(), solution.routeStart(r), solution.routeEnd(r), r, instance, report)) {
+                return this.violation;
+            }
+        }
+        return this.end(instance);
+    }
+
+    // This method resets the buffers and checks the number of routes
+    private boolean begin(int numberOfRoutes, Instance instance) {
+        int words = (instance.getNumberOfNodes() >> 6) + 1;
+        if (this.served.length < words) {
+            this.served = new long[words];
+        } else {
+            Arrays.fill(this.served, 0, words, 0L);
+        }
+        this.servedCount = 0;
+        this.violation = FeasibilityReport.Violation.NONE;
+        if (numberOfRoutes != instance.getNumberOfVehicles()) {
+            this.fail(FeasibilityReport.Violation.ROUTE_COUNT, -1, -1, -1);
+            return false;
+        }
+        return true;
+    }
+
+    // This method checks the route stored in nodes[from, to), marking its customers as served
+    private boolean checkRoute(int[] nodes, int from, int to, int route, Instance instance, boolean report) {
+        if (to == from || nodes[from] != 1) {
+            this.fail(FeasibilityReport.Violation.ROUTE_ENDPOINTS, route, 0, to == from ? -1 : nodes[from]);
+            return false;
+        }
+        int numberOfNodes = instance.getNumberOfNodes();
+        double capacity = instance.getCarryingCapacity();
+        double batteryCapacity = instance.getBatteryCapacity();
+        double load = 0;
+        double energy = 0;
+        for (int p = from; p < to; p++) {
+            int node = nodes[p];
+            if (node < 1 || node > numberOfNodes) {
+                this.fail(FeasibilityReport.Violation.INVALID_NODE, route, p - from, node);
+                return false;
+            }
+            if (p > from) {
+                energy += instance.getBatteryConsumption(nodes[p - 1], node);
+                if (energy > batteryCapacity) {
+                    this.fail(FeasibilityReport.Violation.BATTERY, route, p - from, node);
+                    this.batteryExcess = energy - batteryCapacity;
+                    return false;
+                }
+            }
+            if (instance.isChargeStation(node)) {
+                energy = 0;
+            } else {
+                long bit = 1L << node;
+                if ((this.served[node >> 6] & bit) != 0) {
+                    this.fail(FeasibilityReport.Violation.DUPLICATE_CUSTOMER, route, p - from, node);
+                    return false;
+                }
+                this.served[node >> 6] |= bit;
+                this.servedCount++;
+                load += instance.getDemand(node);
+                if (load > capacity) {
+                    this.fail(FeasibilityReport.Violation.CAPACITY, route, p - from, node);
+                    if (report) {
+                        for (int q = p + 1; q < to; q++) {
+                            if (nodes[q] >= 1 && nodes[q] <= numberOfNodes) load += instance.getDemand(nodes[q]);
+                        }
+                    }
+                    this.loadExcess = load - capacity;
+                    return false;
+                }
+            }
+        }
+        if (nodes[to - 1] != 1) {
+            this.fail(FeasibilityReport.Violation.ROUTE_ENDPOINTS, route, to - 1 - from, nodes[to - 1]);
+            return false;
+        }
+        return true;
+    }
+
+    // This method looks for customers not served by any route
+    private FeasibilityReport.Violation end(Instance instance) {
+        if (this.servedCount == instance.getNumberOfCustomers() - 1) {
+            return this.violation;
+        }
+        for (int c = 2; c <= instance.getNumberOfCustomers(); c++) {
+            if ((this.served[c >> 6] & (1L << c)) == 0) {
+                this.fail(FeasibilityReport.Violation.UNSERVED_CUSTOMER, -1, -1, c);
+                break;
+            }
+        }
+        return this.violation;
+    }
+
+    private void fail(FeasibilityReport.Violation violation, int route, int position, int node) {
+        this.violation = violation;
+        this.violationRoute = route;
+        this.violationPosition = position;
+        this.violationNode = node;
+        this.loadExcess = 0;
+        this.batteryExcess = 0;
+    }
+
+    private FeasibilityReport report(FeasibilityReport.Violation violation) {
+        if (violation == FeasibilityReport.Violation.NONE) {
+            return FeasibilityReport.FEASIBLE;
+        }
+        return new FeasibilityReport(violation, this.violationRoute, this.violationPosition, this.violationNode,
+                this.loadExcess, this.batteryExcess);
+    }
+}
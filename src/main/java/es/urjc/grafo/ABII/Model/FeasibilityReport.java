@@ -0,0 +1,38 @@
+package es.urjc.grafo.ABII.Model;
+
+/**
+ * Result of checking the feasibility of a solution: the first violated constraint, where it was found
+ * and, for capacity and battery violations, by how much the limit is exceeded.
+ * @param route route where the violation was found (-1 if it does not belong to a route)
+ * @param position position within the route (-1 if it does not belong to a position)
+ * @param node node at that position, or the unserved customer (-1 if not applicable)
+ * @param loadExcess demand of the whole route above the carrying capacity
+ * @param batteryExcess energy above the battery capacity needed to reach "node"
+ */
+public record FeasibilityReport(Violation violation, int route, int position, int node,
+                                double loadExcess, double batteryExcess) {
+
+    public static final FeasibilityReport FEASIBLE = new FeasibilityReport(Violation.NONE, -1, -1, -1, 0, 0);
+
+    public enum Violation {
+        NONE,
+        // The number of routes differs from the number of vehicles
+        ROUTE_COUNT,
+        // A route does not start or end at the base
+        ROUTE_ENDPOINTS,
+        // A node id out of the instance
+        INVALID_NODE,
+        // A customer visited more than once
+        DUPLICATE_CUSTOMER,
+        // A route serves more demand than the carrying capacity
+        CAPACITY,
+        // The battery runs out before reaching a node
+        BATTERY,
+        // A customer not visited by any route
+        UNSERVED_CUSTOMER
+    }
+
+    public boolean isFeasible() {
+        return violation == Violation.NONE;
+    }
+}
@@ -1,110 +1,179 @@
 package es.urjc.grafo.ABII.Model;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class Instance {
+/**
+ * Immutable, array-backed instance. Nodes are identified from 1 to {@link #getNumberOfNodes()}:
+ * customers (the base being node 1) come first and charge stations after them.
+ * Every array is indexed by node id (position 0 is unused), so instances can be shared across threads.
+ */
+public final class Instance {
 
-    private Map<Integer, Double[]> coordinates;
-    private Set<Integer> chargeStations;
-    private int numberOfVehicles;
-    private Map<Integer, Double> customersDemand;
-    private double batteryCapacity;
-    private double carryingCapacity;
-    private double h;
-    private double optimumValue;
+    // Instances with more nodes than this do not get dense matrices unless explicitly requested
+    public static final int DEFAULT_MATRIX_NODE_LIMIT = 2048;
+    // Largest array the virtual machine can allocate, which bounds the dense matrices to about 46,000 nodes
+    private static final long MAX_MATRIX_CELLS = Integer.MAX_VALUE - 8;
+
+    private final int numberOfNodes;
+    private final int numberOfCustomers;
+    private final int numberOfVehicles;
+    private final double batteryCapacity;
+    private final double carryingCapacity;
+    private final double h;
+    private final double optimumValue;
+    // Interleaved coordinates: x at 2 * id, y at 2 * id + 1
+    private final double[] coordinates;
+    // Customer demand (0 for charge stations)
+    private final double[] demand;
+    private final boolean[] chargeStation;
+    // Charge station ids (the base included) in ascending order
+    private final int[] chargeStationIds;
+    private final Set<Integer> chargeStations;
+    // Dense row-major matrices indexed by node id (row and column 0 are unused), null when not precomputed
+    private final double[] distanceMatrix;
+    private final double[] energyMatrix;
+    // Closest charge station to each node and its distance
+    private final int[] closestChargeStation;
+    private final double[] closestChargeStationDistance;
+    // Station "s" minimizing d(i, s) + d(s, j) for each pair of nodes, stored like the dense matrices
+    private final int[] bestChargeStationBetween;
+    // Nearest customer lists, built on demand for each "k"
+    private final Map<Integer, NeighbourLists> nearestCustomers = new ConcurrentHashMap<>();
 
     /**
-     * Reads the file line by line
+     * Reads an instance file (text or {@link InstanceCache} format), precomputing the distance and
+     * energy matrices when the instance has at most {@link #DEFAULT_MATRIX_NODE_LIMIT} nodes.
+     * Matrices stored in a cache file are used whatever the number of nodes
      * @param filePath
+     * @throws java.io.UncheckedIOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is malformed
      */
     public Instance(String filePath) {
-        File instance = new File(filePath);
-        try {
-            Scanner scanner = new Scanner(instance);
-            // Optimum value
-            if (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                optimumValue = Double.parseDouble(splitLine[1]);
-            }
-            // Number of vehicles
-            if (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                numberOfVehicles = Integer.parseInt(splitLine[1]);
-            }
-            // Dimension
-            if (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                customersDemand = new HashMap<>(Integer.parseInt(splitLine[1]));
-            }
-            // Charge stations
-            if (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                chargeStations = new HashSet<>(Integer.parseInt(splitLine[1]));
-                coordinates = new HashMap<>(customersDemand.size() + Integer.parseInt(splitLine[1]));
-            }
-            // Vehicle capacity
-            if (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                carryingCapacity = Double.parseDouble(splitLine[1]);
-            }
-            // Vehicle battery
-            if (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                batteryCapacity = Double.parseDouble(splitLine[1]);
-            }
-            // h
-            if (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                h = Double.parseDouble(splitLine[1]);
+        this(filePath, DEFAULT_MATRIX_NODE_LIMIT);
+    }
+
+    /**
+     * Reads an instance file (text or {@link InstanceCache} format)
+     * @param filePath
+     * @param precomputeMatrices whether the dense distance and energy matrices are built at load time (or taken
+     *                           from the cache file). When false, matrices stored in a cache file are ignored
+     * @throws IllegalArgumentException if the matrices are requested but the instance has too many nodes for them
+     */
+    public Instance(String filePath, boolean precomputeMatrices) {
+        this(filePath, precomputeMatrices ? Integer.MAX_VALUE : 0);
+    }
+
+    private Instance(String filePath, int matrixNodeLimit) {
+        this(InstanceParser.read(Path.of(filePath)), matrixNodeLimit);
+    }
+
+    // A "matrixNodeLimit" of 0 disables the dense matrices, even those in "data"
+    Instance(Data data, int matrixNodeLimit) {
+        this.numberOfNodes = data.numberOfNodes();
+        this.numberOfCustomers = data.numberOfCustomers();
+        this.numberOfVehicles = data.numberOfVehicles();
+        this.batteryCapacity = data.batteryCapacity();
+        this.carryingCapacity = data.carryingCapacity();
+        this.h = data.h();
+        this.optimumValue = data.optimumValue();
+        this.coordinates = data.coordinates();
+        this.demand = data.demand();
+        this.chargeStation = data.chargeStation();
+
+        int stations = 0;
+        for (int i = 1; i <= this.numberOfNodes; i++) {
+            if (this.chargeStation[i]) stations++;
+        }
+        this.chargeStationIds = new int[stations];
+        Set<Integer> stationSet = new HashSet<>(stations);
+        for (int i = 1, k = 0; i <= this.numberOfNodes; i++) {
+            if (this.chargeStation[i]) {
+                this.chargeStationIds[k++] = i;
+                stationSet.add(i);
             }
-            // Coordinates start
-            if (scanner.hasNextLine()) {
-                scanner.nextLine();
+        }
+        this.chargeStations = Collections.unmodifiableSet(stationSet);
+
+        // The dense matrices go first so that the charge station tables can be built from them
+        int stride = this.numberOfNodes + 1;
+        boolean storedMatrices = data.distanceMatrix() != null && matrixNodeLimit > 0;
+        if (storedMatrices) {
+            this.distanceMatrix = data.distanceMatrix();
+            this.energyMatrix = data.energyMatrix();
+        } else if (this.numberOfNodes <= matrixNodeLimit) {
+            long cells = (long) stride * stride;
+            if (cells > MAX_MATRIX_CELLS) {
+                throw new IllegalArgumentException("Cannot precompute the matrices of an instance with "
+                        + this.numberOfNodes + " nodes: they would have " + cells + " cells, more than the "
+                        + MAX_MATRIX_CELLS + " an array can hold");
             }
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                if (line.equals("SECCION_DEMANDA")) {
-                    break;
+            this.distanceMatrix = new double[stride * stride];
+            this.energyMatrix = new double[stride * stride];
+            for (int i = 1; i <= this.numberOfNodes; i++) {
+                for (int j = i; j <= this.numberOfNodes; j++) {
+                    double distance = this.computeDistance(i, j);
+                    double energy = this.h * distance;
+                    this.distanceMatrix[i * stride + j] = distance;
+                    this.distanceMatrix[j * stride + i] = distance;
+                    this.energyMatrix[i * stride + j] = energy;
+                    this.energyMatrix[j * stride + i] = energy;
                 }
-                String[] splitLine = line.split(" ");
-                int id = Integer.parseInt(splitLine[0]);
-                double firstCoordinate = Integer.parseInt(splitLine[1]);
-                double secondCoordinate = Double.parseDouble(splitLine[2]);
-                this.coordinates.put(id, new Double[]{firstCoordinate, secondCoordinate});
             }
-            // Demand
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                if (line.equals("ID_NODOS_ESTACIONES_CARGA")) {
-                    break;
+        } else {
+            this.distanceMatrix = null;
+            this.energyMatrix = null;
+        }
+
+        this.closestChargeStation = new int[stride];
+        this.closestChargeStationDistance = new double[stride];
+        for (int i = 1; i <= this.numberOfNodes; i++) {
+            int closest = -1;
+            double bestDistance = Double.POSITIVE_INFINITY;
+            for (int cs : this.chargeStationIds) {
+                double distance = this.getDistance(i, cs);
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    closest = cs;
                 }
-                String[] splitLine = line.split(" ");
-                int id = Integer.parseInt(splitLine[0]);
-                double demand = Integer.parseInt(splitLine[1]);
-                this.customersDemand.put(id, demand);
             }
-            // Charge stations
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine();
-                String[] splitLine = line.split(" ");
-                int id = Integer.parseInt(splitLine[0]);
-                this.chargeStations.add(id);
+            this.closestChargeStation[i] = closest;
+            this.closestChargeStationDistance[i] = bestDistance;
+        }
+
+        if (storedMatrices && data.bestChargeStationBetween() != null) {
+            this.bestChargeStationBetween = data.bestChargeStationBetween();
+        } else if (this.distanceMatrix != null) {
+            this.bestChargeStationBetween = new int[stride * stride];
+            for (int i = 1; i <= this.numberOfNodes; i++) {
+                for (int j = i; j <= this.numberOfNodes; j++) {
+                    int best = this.computeBestChargeStationBetween(i, j);
+                    this.bestChargeStationBetween[i * stride + j] = best;
+                    this.bestChargeStationBetween[j * stride + i] = best;
+                }
             }
-            chargeStations.add(1);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+        } else {
+            this.bestChargeStationBetween = null;
         }
     }
 
+    // Raw instance data, with every array indexed by node id (the matrices are null when not available)
+    record Data(double optimumValue, int numberOfVehicles, int numberOfCustomers, int numberOfNodes,
+                double carryingCapacity, double batteryCapacity, double h,
+                double[] coordinates, double[] demand, boolean[] chargeStation,
+                double[] distanceMatrix, double[] energyMatrix, int[] bestChargeStationBetween) {
+    }
+
+    // This method exposes the raw data of the instance (shared, not copied)
+    Data toData(boolean includeMatrices) {
+        boolean matrices = includeMatrices && this.distanceMatrix != null;
+        return new Data(optimumValue, numberOfVehicles, numberOfCustomers, numberOfNodes,
+                carryingCapacity, batteryCapacity, h, coordinates, demand, chargeStation,
+                matrices ? distanceMatrix : null, matrices ? energyMatrix : null,
+                matrices ? bestChargeStationBetween : null);
+    }
+
     public double getOptimumValue() {
         return optimumValue;
     }
@@ -130,59 +199,108 @@ public class Instance {
     }
 
     public Double[] getCoordinates(int id) {
-        return coordinates.get(id);
+        return new Double[]{coordinates[2 * id], coordinates[2 * id + 1]};
+    }
+
+    public double getX(int id) {
+        return coordinates[2 * id];
+    }
+
+    public double getY(int id) {
+        return coordinates[2 * id + 1];
     }
 
     public double getDemand(int id) {
-        return customersDemand.get(id);
+        return demand[id];
     }
 
     public int getNumberOfCustomers() {
-        return customersDemand.size();
+        return numberOfCustomers;
+    }
+
+    // Nodes are customers plus charge stations, identified from 1 to "numberOfNodes"
+    public int getNumberOfNodes() {
+        return numberOfNodes;
     }
 
-    public boolean isChargeStation(Integer id){
-        return chargeStations.contains(id);
+    public boolean hasPrecomputedMatrices() {
+        return distanceMatrix != null;
+    }
+
+    public boolean isChargeStation(int id){
+        return chargeStation[id];
     }
 
     public double getDistance(int id1, int id2){
-        Double[] coordinatesFirstPoint = getCoordinates(id1);
-        Double[] coordinatesSecondPoint = getCoordinates(id2);
-        return Math.sqrt(Math.pow(coordinatesFirstPoint[0] - coordinatesSecondPoint[0], 2) + Math.pow(coordinatesFirstPoint[1] - coordinatesSecondPoint[1], 2));
+        if (distanceMatrix != null) {
+            return distanceMatrix[id1 * (numberOfNodes + 1) + id2];
+        }
+        return computeDistance(id1, id2);
     }
 
+    private double computeDistance(int id1, int id2) {
+        double dx = coordinates[2 * id1] - coordinates[2 * id2];
+        double dy = coordinates[2 * id1 + 1] - coordinates[2 * id2 + 1];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // This method returns the distances from "id" to every customer, customer "i" being at position "i - 1"
     public double[] getDistancesFrom(int id) {
         double[] distances = new double[this.getNumberOfCustomers()];
         for (int i = 0; i < distances.length; i++) {
-            distances[i] = this.getDistance(id, i);
+            distances[i] = this.getDistance(id, i + 1);
         }
         return distances;
     }
 
     public double getBatteryConsumption(int id1, int id2) {
+        if (energyMatrix != null) {
+            return energyMatrix[id1 * (numberOfNodes + 1) + id2];
+        }
         return this.h * this.getDistance(id1, id2);
     }
 
     public int getNumberOfChargeStations() {
-        return chargeStations.size();
+        return chargeStationIds.length;
+    }
+
+    // This method returns the id of the "index"-th charge station, in ascending order of id
+    public int getChargeStationId(int index) {
+        return chargeStationIds[index];
     }
 
     public int getClosestChargeStation(int customer) {
-        Integer closestChargeStation = -1;
+        return closestChargeStation[customer];
+    }
+
+    public double getClosestChargeStationDistance(int customer) {
+        return closestChargeStationDistance[customer];
+    }
+
+    // This method returns the charge station that adds the shortest detour when visited between "id1" and "id2"
+    public int getBestChargeStationBetween(int id1, int id2) {
+        if (bestChargeStationBetween != null) {
+            return bestChargeStationBetween[id1 * (numberOfNodes + 1) + id2];
+        }
+        return computeBestChargeStationBetween(id1, id2);
+    }
+
+    // This method returns the "k" nearest customers of every node, building them the first time they are requested
+    public NeighbourLists getNearestCustomers(int k) {
+        return nearestCustomers.computeIfAbsent(k, size -> new NeighbourLists(this, size));
+    }
+
+    private int computeBestChargeStationBetween(int id1, int id2) {
+        int best = -1;
         double bestDistance = Double.POSITIVE_INFINITY;
-        for (Integer cs : this.chargeStations) {
-            if (closestChargeStation == -1) {
-                closestChargeStation = cs;
-            }
-            else {
-                double distance = this.getDistance(customer, cs);
-                if (distance < bestDistance) {
-                    bestDistance = distance;
-                    closestChargeStation = cs;
-                }
+        for (int cs : this.chargeStationIds) {
+            double distance = this.getDistance(id1, cs) + this.getDistance(cs, id2);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = cs;
             }
         }
-        return closestChargeStation;
+        return best;
     }
 
 }
@@ -0,0 +1,138 @@
+package es.urjc.grafo.ABII.Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compact binary format for instances, so that repeated runs can skip text parsing.
+ * Cache files are read back through the regular {@link Instance#Instance(String)} constructor.
+ * <p>
+ * Layout (little endian): magic, version, flags, number of nodes, customers and vehicles (ints);
+ * optimum value, carrying capacity, battery capacity and h (doubles); coordinates and demand;
+ * optionally the distance, energy and best charge station matrices; and one byte per charge station flag.
+ */
+public final class InstanceCache {
+
+    private static final int MAGIC = 0x50525645; // "EVRP"
+    private static final int VERSION = 1;
+    private static final int FLAG_MATRICES = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES + 4 * Double.BYTES;
+
+    private InstanceCache() {
+    }
+
+    /**
+     * Writes the instance in binary format
+     * @param instance
+     * @param path
+     * @param includeMatrices whether the precomputed matrices are stored too (ignored if the instance has none)
+     * @throws IllegalArgumentException if the file would exceed {@link Integer#MAX_VALUE} bytes, which happens
+     * with the matrices above about 10,000 nodes (any file already at "path" is left untouched)
+     */
+    public static void write(Instance instance, Path path, boolean includeMatrices) {
+        Instance.Data data = instance.toData(includeMatrices);
+        boolean matrices = data.distanceMatrix() != null;
+        int nodes = data.numberOfNodes();
+        long matrixCells = matrices ? (long) (nodes + 1) * (nodes + 1) : 0;
+        long size = HEADER_BYTES
+                + (long) Double.BYTES * (data.coordinates().length + data.demand().length)
+                + matrixCells * (2L * Double.BYTES + Integer.BYTES)
+                + (nodes + 1);
+        // Cache files are mapped as a single buffer, both here and when they are read
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot write instance cache " + path + ": " + nodes + " nodes take "
+                    + size + " bytes" + (matrices ? " with the matrices" : "") + ", more than the "
+                    + Integer.MAX_VALUE + " bytes a cache file can hold");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(matrices ? FLAG_MATRICES : 0);
+            buffer.putInt(nodes).putInt(data.numberOfCustomers()).putInt(data.numberOfVehicles());
+            buffer.putDouble(data.optimumValue()).putDouble(data.carryingCapacity())
+                    .putDouble(data.batteryCapacity()).putDouble(data.h());
+            putDoubles(buffer, data.coordinates());
+            putDoubles(buffer, data.demand());
+            if (matrices) {
+                putDoubles(buffer, data.distanceMatrix());
+                putDoubles(buffer, data.energyMatrix());
+                buffer.asIntBuffer().put(data.bestChargeStationBetween());
+                buffer.position(buffer.position() + Integer.BYTES * data.bestChargeStationBetween().length);
+            }
+            for (int i = 0; i <= nodes; i++) {
+                buffer.put((byte) (data.chargeStation()[i] ? 1 : 0));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write instance cache " + path, e);
+        }
+    }
+
+    static boolean isCache(ByteBuffer buffer) {
+        return buffer.limit() >= HEADER_BYTES && buffer.order(ByteOrder.LITTLE_ENDIAN).getInt(0) == MAGIC;
+    }
+
+    // This method decodes a mapped cache file
+    static Instance.Data read(String fileName, ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN).position(Integer.BYTES);
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException(fileName + ": unsupported instance cache version " + version);
+        }
+        boolean matrices = (buffer.getInt() & FLAG_MATRICES) != 0;
+        int nodes = buffer.getInt();
+        int customers = buffer.getInt();
+        int vehicles = buffer.getInt();
+        if (nodes < 1 || customers < 1 || customers > nodes || vehicles < 1) {
+            throw new IllegalArgumentException(fileName + ": corrupted instance cache header");
+        }
+        double optimumValue = buffer.getDouble();
+        double carryingCapacity = buffer.getDouble();
+        double batteryCapacity = buffer.getDouble();
+        double h = buffer.getDouble();
+
+        long matrixCells = matrices ? (long) (nodes + 1) * (nodes + 1) : 0;
+        long expected = HEADER_BYTES + (long) Double.BYTES * 3 * (nodes + 1)
+                + matrixCells * (2L * Double.BYTES + Integer.BYTES) + (nodes + 1);
+        if (buffer.limit() != expected) {
+            throw new IllegalArgumentException(fileName + ": instance cache has " + buffer.limit()
+                    + " bytes, expected " + expected);
+        }
+
+        // The buffer holds at most Integer.MAX_VALUE bytes, so the matrices fit in arrays
+        double[] coordinates = getDoubles(buffer, 2 * (nodes + 1));
+        double[] demand = getDoubles(buffer, nodes + 1);
+        double[] distanceMatrix = null;
+        double[] energyMatrix = null;
+        int[] bestChargeStationBetween = null;
+        if (matrices) {
+            distanceMatrix = getDoubles(buffer, (int) matrixCells);
+            energyMatrix = getDoubles(buffer, (int) matrixCells);
+            bestChargeStationBetween = new int[(int) matrixCells];
+            buffer.asIntBuffer().get(bestChargeStationBetween);
+            buffer.position(buffer.position() + Integer.BYTES * bestChargeStationBetween.length);
+        }
+        boolean[] chargeStation = new boolean[nodes + 1];
+        for (int i = 0; i <= nodes; i++) {
+            chargeStation[i] = buffer.get() != 0;
+        }
+        return new Instance.Data(optimumValue, vehicles, customers, nodes, carryingCapacity, batteryCapacity, h,
+                coordinates, demand, chargeStation, distanceMatrix, energyMatrix, bestChargeStationBetween);
+    }
+
+    private static void putDoubles(ByteBuffer buffer, double[] values) {
+        buffer.asDoubleBuffer().put(values);
+        buffer.position(buffer.position() + Double.BYTES * values.length);
+    }
+
+    private static double[] getDoubles(ByteBuffer buffer, int length) {
+        double[] values = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + Double.BYTES * length);
+        return values;
+    }
+}
@@ -0,0 +1,308 @@
+package es.urjc.grafo.ABII.Model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads instances in text format straight from a memory-mapped file, without regular expressions
+ * or intermediate strings. Files written by {@link InstanceCache} are detected by their header and
+ * loaded from the binary format instead.
+ */
+final class InstanceParser {
+
+    private static final byte[][] HEADER_KEYS = {
+            ascii("VALOR_OPTIMO"),
+            ascii("NUM_VEHICULOS"),
+            ascii("DIMENSION"),
+            ascii("ESTACIONES_CARGA"),
+            ascii("CAPACIDAD_CARGA_VE"),
+            ascii("CAPACIDAD_BATERIA_VE"),
+            ascii("FACTOR_CONSUMO_ENERGIA")
+    };
+    private static final byte[] COORDINATES_SECTION = ascii("SECCION_COORD_NODOS");
+    private static final byte[] DEMAND_SECTION = ascii("SECCION_DEMANDA");
+    private static final byte[] CHARGE_STATIONS_SECTION = ascii("ID_NODOS_ESTACIONES_CARGA");
+
+    // Powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final String fileName;
+    private final ByteBuffer buffer;
+    private final int limit;
+    private int position;
+    private int line;
+
+    private InstanceParser(String fileName, ByteBuffer buffer) {
+        this.fileName = fileName;
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        this.position = 0;
+        this.line = 1;
+    }
+
+    // This method reads an instance file, either in text format or in the binary cache format
+    static Instance.Data read(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (InstanceCache.isCache(buffer)) {
+                return InstanceCache.read(path.toString(), buffer);
+            }
+            return new InstanceParser(path.toString(), buffer).parse();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read instance " + path, e);
+        }
+    }
+
+    private Instance.Data parse() {
+        double optimumValue = this.readHeader(0);
+        int numberOfVehicles = this.toCount(this.readHeader(1), 1);
+        int numberOfCustomers = this.toCount(this.readHeader(2), 1);
+        int numberOfNodes = numberOfCustomers + this.toCount(this.readHeader(3), 0);
+        double carryingCapacity = this.readHeader(4);
+        double batteryCapacity = this.readHeader(5);
+        double h = this.readHeader(6);
+
+        double[] coordinates = new double[2 * (numberOfNodes + 1)];
+        double[] demand = new double[numberOfNodes + 1];
+        boolean[] chargeStation = new boolean[numberOfNodes + 1];
+
+        // Coordinates
+        this.expectKeyword(COORDINATES_SECTION);
+        boolean[] seen = new boolean[numberOfNodes + 1];
+        int coordinatesRead = 0;
+        while (!this.atKeyword(DEMAND_SECTION)) {
+            int id = this.readId(numberOfNodes);
+            if (seen[id]) throw this.error("duplicated coordinates for node " + id);
+            seen[id] = true;
+            coordinates[2 * id] = this.readNumber();
+            coordinates[2 * id + 1] = this.readNumber();
+            this.endLine();
+            coordinatesRead++;
+        }
+        if (coordinatesRead != numberOfNodes) {
+            throw this.error("expected coordinates for " + numberOfNodes + " nodes but found " + coordinatesRead);
+        }
+
+        // Demand
+        this.expectKeyword(DEMAND_SECTION);
+        seen = new boolean[numberOfCustomers + 1];
+        int demandsRead = 0;
+        while (!this.atKeyword(CHARGE_STATIONS_SECTION)) {
+            int id = this.readId(numberOfCustomers);
+            if (seen[id]) throw this.error("duplicated demand for customer " + id);
+            seen[id] = true;
+            demand[id] = this.readNumber();
+            this.endLine();
+            demandsRead++;
+        }
+        if (demandsRead != numberOfCustomers) {
+            throw this.error("expected demands for " + numberOfCustomers + " customers but found " + demandsRead);
+        }
+
+        // Charge stations
+        this.expectKeyword(CHARGE_STATIONS_SECTION);
+        this.skipBlankLines();
+        while (this.position < this.limit) {
+            int id = this.readId(numberOfNodes);
+            chargeStation[id] = true;
+            this.endLine();
+            this.skipBlankLines();
+        }
+        chargeStation[1] = true;
+
+        return new Instance.Data(optimumValue, numberOfVehicles, numberOfCustomers, numberOfNodes,
+                carryingCapacity, batteryCapacity, h, coordinates, demand, chargeStation, null, null, null);
+    }
+
+    // This method reads a "KEY: value" line
+    private double readHeader(int index) {
+        this.skipBlankLines();
+        byte[] key = HEADER_KEYS[index];
+        if (!this.matches(key)) {
+            throw this.error("expected " + new String(key, StandardCharsets.US_ASCII));
+        }
+        this.position += key.length;
+        if (this.position >= this.limit || this.buffer.get(this.position) != ':') {
+            throw this.error("expected ':' after " + new String(key, StandardCharsets.US_ASCII));
+        }
+        this.position++;
+        double value = this.readNumber();
+        this.endLine();
+        return value;
+    }
+
+    private int toCount(double value, int minimum) {
+        if (value != Math.rint(value) || value < minimum || value > Integer.MAX_VALUE - 1) {
+            throw this.error("invalid count " + value);
+        }
+        return (int) value;
+    }
+
+    private void expectKeyword(byte[] keyword) {
+        this.skipBlankLines();
+        if (!this.matches(keyword)) {
+            throw this.error("expected " + new String(keyword, StandardCharsets.US_ASCII));
+        }
+        this.position += keyword.length;
+        this.endLine();
+    }
+
+    // This method returns whether the next non blank line starts with "keyword" (failing at the end of the file)
+    private boolean atKeyword(byte[] keyword) {
+        this.skipBlankLines();
+        if (this.position >= this.limit) {
+            throw this.error("unexpected end of file, expected " + new String(keyword, StandardCharsets.US_ASCII));
+        }
+        return this.matches(keyword);
+    }
+
+    private boolean matches(byte[] keyword) {
+        if (this.position + keyword.length > this.limit) return false;
+        for (int i = 0; i < keyword.length; i++) {
+            if (this.buffer.get(this.position + i) != keyword[i]) return false;
+        }
+        return true;
+    }
+
+    private int readId(int maxId) {
+        double value = this.readNumber();
+        if (value != Math.rint(value) || value < 1 || value > maxId) {
+            throw this.error("invalid node id " + value + " (expected 1.." + maxId + ")");
+        }
+        return (int) value;
+    }
+
+    // This method parses a decimal number, allocating only for inputs that cannot be converted exactly
+    private double readNumber() {
+        this.skipSpaces();
+        int start = this.position;
+        boolean negative = false;
+        if (this.position < this.limit && (this.buffer.get(this.position) == '-' || this.buffer.get(this.position) == '+')) {
+            negative = this.buffer.get(this.position) == '-';
+            this.position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+        boolean dot = false;
+        while (this.position < this.limit) {
+            byte b = this.buffer.get(this.position);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (mantissa != 0 || b != '0') significantDigits++;
+                if (significantDigits <= 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (dot) exponent--;
+                } else if (!dot) {
+                    exponent++;
+                }
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+            this.position++;
+        }
+        if (digits == 0) {
+            throw this.error("expected a number");
+        }
+        if (this.position < this.limit && (this.buffer.get(this.position) == 'e' || this.buffer.get(this.position) == 'E')) {
+            this.position++;
+            boolean negativeExponent = false;
+            if (this.position < this.limit && (this.buffer.get(this.position) == '-' || this.buffer.get(this.position) == '+')) {
+                negativeExponent = this.buffer.get(this.position) == '-';
+                this.position++;
+            }
+            int exponentDigits = 0;
+            int value = 0;
+            while (this.position < this.limit && this.buffer.get(this.position) >= '0' && this.buffer.get(this.position) <= '9') {
+                value = Math.min(value * 10 + (this.buffer.get(this.position) - '0'), 100000);
+                exponentDigits++;
+                this.position++;
+            }
+            if (exponentDigits == 0) {
+                throw this.error("malformed exponent");
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (this.position < this.limit && !this.isSeparator(this.buffer.get(this.position))) {
+            throw this.error("unexpected character '" + (char) this.buffer.get(this.position) + "' in number");
+        }
+
+        double value;
+        if (significantDigits <= 15 && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact, so a single division or multiplication is correctly rounded
+            value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            byte[] bytes = new byte[this.position - start];
+            this.buffer.get(start, bytes);
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean isSeparator(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private void skipSpaces() {
+        while (this.position < this.limit && (this.buffer.get(this.position) == ' ' || this.buffer.get(this.position) == '\t')) {
+            this.position++;
+        }
+    }
+
+    // This method consumes trailing spaces and the line break, failing if anything else is left on the line
+    private void endLine() {
+        this.skipSpaces();
+        if (this.position < this.limit && this.buffer.get(this.position) == '\r') {
+            this.position++;
+        }
+        if (this.position < this.limit) {
+            if (this.buffer.get(this.position) != '\n') {
+                throw this.error("unexpected character '" + (char) this.buffer.get(this.position) + "'");
+            }
+            this.position++;
+            this.line++;
+        }
+    }
+
+    private void skipBlankLines() {
+        while (true) {
+            int start = this.position;
+            this.skipSpaces();
+            if (this.position < this.limit && this.buffer.get(this.position) == '\r') {
+                this.position++;
+            }
+            if (this.position < this.limit && this.buffer.get(this.position) == '\n') {
+                this.position++;
+                this.line++;
+            } else if (this.position >= this.limit) {
+                return;
+            } else {
+                this.position = start;
+                return;
+            }
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(this.fileName + ":" + this.line + ": " + message);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,17 @@
+package es.urjc.grafo.ABII.Model;
+
+/**
+ * Outcome of evaluating a local move: change in total distance and whether the modified routes
+ * still respect the carrying capacity and the battery (for the stretches touched by the move).
+ */
+public record MoveDelta(double distance, boolean loadFeasible, boolean batteryFeasible) {
+
+    public boolean isFeasible() {
+        return loadFeasible && batteryFeasible;
+    }
+
+    // Whether the move is feasible and shortens the solution by more than "epsilon"
+    public boolean isImproving(double epsilon) {
+        return isFeasible() && distance < -epsilon;
+    }
+}
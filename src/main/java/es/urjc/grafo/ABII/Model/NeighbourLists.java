@@ -0,0 +1,59 @@
+package es.urjc.grafo.ABII.Model;
+
+/**
+ * The "k" customers closest to every node, in ascending order of distance (ties broken by id). The base
+ * and the node itself are never part of a list. Lists are immutable, so they can be shared across threads;
+ * get them through {@link Instance#getNearestCustomers(int)}, which builds them once per "k".
+ */
+public final class NeighbourLists {
+
+    private final int k;
+    // Flat row-major table, the list of node "id" spanning positions [id * k, (id + 1) * k)
+    private final int[] neighbours;
+    // Length of each list ("k" unless the instance has fewer customers)
+    private final int[] sizes;
+
+    NeighbourLists(Instance instance, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        int numberOfNodes = instance.getNumberOfNodes();
+        this.neighbours = new int[(numberOfNodes + 1) * k];
+        this.sizes = new int[numberOfNodes + 1];
+        double[] distances = new double[k];
+        for (int id = 1; id <= numberOfNodes; id++) {
+            int offset = id * k;
+            int size = 0;
+            for (int c = 2; c <= instance.getNumberOfCustomers(); c++) {
+                if (c == id) continue;
+                double distance = instance.getDistance(id, c);
+                if (size == k && distance >= distances[k - 1]) continue;
+                // Insertion into the sorted list, dropping its farthest customer when full
+                int position = size < k ? size++ : k - 1;
+                while (position > 0 && distances[position - 1] > distance) {
+                    distances[position] = distances[position - 1];
+                    this.neighbours[offset + position] = this.neighbours[offset + position - 1];
+                    position--;
+                }
+                distances[position] = distance;
+                this.neighbours[offset + position] = c;
+            }
+            this.sizes[id] = size;
+        }
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    // Number of customers in the list of "id"
+    public int size(int id) {
+        return sizes[id];
+    }
+
+    // The "rank"-th closest customer to "id", from 0 to size(id) - 1
+    public int get(int id, int rank) {
+        return neighbours[id * k + rank];
+    }
+}
@@ -0,0 +1,73 @@
+package es.urjc.grafo.ABII.Model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packed form of a {@link Solution}: every route is stored back to back in a single giant tour,
+ * route "r" spanning positions [offsets[r], offsets[r + 1]) of "tour". The tour array may be
+ * longer than the last offset, so that it can be reused as a buffer while building solutions.
+ */
+public record PackedSolution(int[] tour, int[] offsets) {
+
+    // This method packs the routes of "solution"
+    public static PackedSolution of(Solution solution) {
+        List<Integer>[] routes = solution.routes();
+        int[] offsets = new int[routes.length + 1];
+        for (int r = 0; r < routes.length; r++) {
+            offsets[r + 1] = offsets[r] + routes[r].size();
+        }
+        int[] tour = new int[offsets[routes.length]];
+        for (int r = 0; r < routes.length; r++) {
+            int position = offsets[r];
+            for (int node : routes[r]) {
+                tour[position++] = node;
+            }
+        }
+        return new PackedSolution(tour, offsets);
+    }
+
+    // This method unpacks the solution into one list per route
+    public Solution toSolution() {
+        List<Integer>[] routes = Solution.newRoutes(this.getNumberOfRoutes());
+        for (int r = 0; r < routes.length; r++) {
+            routes[r] = new ArrayList<>(this.routeSize(r));
+            for (int p = this.offsets[r]; p < this.offsets[r + 1]; p++) {
+                routes[r].add(this.tour[p]);
+            }
+        }
+        return new Solution(routes);
+    }
+
+    public int getNumberOfRoutes() {
+        return offsets.length - 1;
+    }
+
+    public int size() {
+        return offsets[offsets.length - 1];
+    }
+
+    // First position of route "route"
+    public int routeStart(int route) {
+        return offsets[route];
+    }
+
+    // Position after the last one of route "route"
+    public int routeEnd(int route) {
+        return offsets[route + 1];
+    }
+
+    public int routeSize(int route) {
+        return offsets[route + 1] - offsets[route];
+    }
+
+    public int get(int position) {
+        return tour[position];
+    }
+
+    // This method returns a deep copy of the solution
+    public PackedSolution copy() {
+        return new PackedSolution(Arrays.copyOf(tour, size()), offsets.clone());
+    }
+}
@@ -0,0 +1,148 @@
+package es.urjc.grafo.ABII.Model;
+
+/**
+ * Per-position data of a {@link PackedSolution} (route, accumulated load and battery consumption between
+ * recharges) that lets {@link Evaluator} evaluate local moves in constant time. Recharge points are the
+ * charge stations, the base included. The state describes the solution at the time it was built, so it
+ * has to be rebuilt with {@link #update()} after the solution changes.
+ */
+public final class RouteState {
+
+    private final PackedSolution solution;
+    private final Instance instance;
+    // Route of each position
+    private int[] route;
+    // Demand served from the start of the route up to each position (inclusive)
+    private double[] load;
+    // Energy consumed from the last recharge at or before each position
+    private double[] energyFrom;
+    // Energy needed from each position to the next recharge at or after it
+    private double[] energyTo;
+    // Position of the next recharge at or after each position (the end of the route if there is none)
+    private int[] nextRecharge;
+
+    public RouteState(PackedSolution solution, Instance instance) {
+        this.solution = solution;
+        this.instance = instance;
+        this.update();
+    }
+
+    // This method recomputes the state from the current contents of the solution
+    public void update() {
+        int size = this.solution.size();
+        if (this.route == null || this.route.length < size) {
+            this.route = new int[size];
+            this.load = new double[size];
+            this.energyFrom = new double[size];
+            this.energyTo = new double[size];
+            this.nextRecharge = new int[size];
+        }
+        int[] tour = this.solution.tour();
+        for (int r = 0; r < this.solution.getNumberOfRoutes(); r++) {
+            int start = this.solution.routeStart(r);
+            int end = this.solution.routeEnd(r);
+            double accumulatedLoad = 0;
+            double energy = 0;
+            for (int p = start; p < end; p++) {
+                int node = tour[p];
+                this.route[p] = r;
+                accumulatedLoad += this.instance.getDemand(node);
+                this.load[p] = accumulatedLoad;
+                if (p > start) {
+                    energy += this.instance.getBatteryConsumption(tour[p - 1], node);
+                }
+                if (this.instance.isChargeStation(node)) {
+                    energy = 0;
+                }
+                this.energyFrom[p] = energy;
+            }
+            energy = 0;
+            int recharge = end;
+            for (int p = end - 1; p >= start; p--) {
+                int node = tour[p];
+                if (p < end - 1) {
+                    energy += this.instance.getBatteryConsumption(node, tour[p + 1]);
+                }
+                if (this.instance.isChargeStation(node)) {
+                    energy = 0;
+                    recharge = p;
+                }
+                this.energyTo[p] = energy;
+                this.nextRecharge[p] = recharge;
+            }
+        }
+    }
+
+    public PackedSolution getSolution() {
+        return solution;
+    }
+
+    public Instance getInstance() {
+        return instance;
+    }
+
+    public int getRoute(int position) {
+        return route[position];
+    }
+
+    // Total demand served by route "route"
+    public double getRouteLoad(int route) {
+        return load[solution.routeEnd(route) - 1];
+    }
+
+    // Demand served by the positions "first" to "last" (both inclusive, same route)
+    public double getLoad(int first, int last) {
+        if (last < first) return 0;
+        return load[last] - load[first] + instance.getDemand(solution.get(first));
+    }
+
+    // Energy consumed since the last recharge when arriving at "position"
+    public double getEnergyFrom(int position) {
+        return energyFrom[position];
+    }
+
+    // Energy needed to get from "position" to the next recharge
+    public double getEnergyTo(int position) {
+        return energyTo[position];
+    }
+
+    // Whether a recharge point lies between positions "first" and "last" (both inclusive, same route)
+    boolean hasRecharge(int first, int last) {
+        return nextRecharge[first] <= last;
+    }
+
+    // Battery check of a route under construction, chaining pieces of the current routes (see "then")
+    private double chainEnergy;
+    private int chainNode;
+
+    // This method starts a route under construction with the positions from the start of a route up to "last"
+    void begin(int last) {
+        this.chainEnergy = this.energyFrom[last];
+        this.chainNode = this.solution.get(last);
+    }
+
+    /**
+     * Appends the positions "first" to "last" (a piece of a single route, traversed backwards when
+     * "forward" is false) to the route under construction. Only the stretches the piece modifies are
+     * checked: the battery must last until its first recharge, and the energy consumed after its last
+     * recharge is carried over to the next piece. Empty pieces ("last" before "first") are ignored.
+     */
+    void then(int first, int last, boolean forward) {
+        if (this.chainEnergy < 0 || last < first) return;
+        int entry = this.solution.get(forward ? first : last);
+        double energy = this.chainEnergy + this.instance.getBatteryConsumption(this.chainNode, entry);
+        if (this.hasRecharge(first, last)) {
+            double head = forward ? this.energyTo[first] : this.energyFrom[last];
+            energy = energy + head > this.instance.getBatteryCapacity() ? -1 : (forward ? this.energyFrom[last] : this.energyTo[first]);
+        } else {
+            energy += this.energyFrom[last] - this.energyFrom[first];
+        }
+        this.chainEnergy = energy;
+        this.chainNode = this.solution.get(forward ? last : first);
+    }
+
+    // Whether the battery never ran out along the route under construction
+    boolean feasible() {
+        return this.chainEnergy >= 0 && this.chainEnergy <= this.instance.getBatteryCapacity();
+    }
+}
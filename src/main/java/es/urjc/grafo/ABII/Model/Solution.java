@@ -5,4 +5,9 @@ import java.util.List;
 
 public record Solution(List<Integer>[] routes) {
 
+    // This method returns an empty array for the routes of a solution, to be filled in by the caller
+    @SuppressWarnings("unchecked")
+    public static List<Integer>[] newRoutes(int numberOfRoutes) {
+        return (List<Integer>[]) new List<?>[numberOfRoutes];
+    }
 }
@@ -1,5 +1,9 @@
 import es.urjc.grafo.ABII.Algorithms.Algorithm;
 import es.urjc.grafo.ABII.Algorithms.Algorithm1;
+import es.urjc.grafo.ABII.Algorithms.StopCondition;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 
@@ -15,4 +19,41 @@ public class Algorithm1Test {
                 60
         );
     }
+
+    @Test
+    public void testParallelReproducibility() {
+        Instance instance = new Instance("src/main/resources/instances/instancia_04.txt");
+        Solution sequential = new Algorithm1(1, 42).run(instance);
+        Solution parallel = new Algorithm1(4, 42).run(instance);
+        Assertions.assertArrayEquals(sequential.routes(), parallel.routes());
+    }
+
+    @Test
+    public void testRandomAlgorithm() {
+        Instance instance = new Instance("src/main/resources/instances/instancia_02.txt");
+        Solution first = new Algorithm1(2, 7, "L64X128MixRandom").run(instance);
+        Solution second = new Algorithm1(2, 7, "L64X128MixRandom").run(instance);
+        Assertions.assertArrayEquals(first.routes(), second.routes());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Algorithm1(1, 7, "Unknown"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Algorithm1(1, 7, "Random"));
+    }
+
+    @Test
+    public void testLazyEvaporation() {
+        // Long enough for the lazy scale factor to be renormalized at least once
+        Instance instance = new Instance("src/main/resources/instances/instancia_02.txt");
+        StopCondition stopCondition = StopCondition.iterations(2500);
+        Solution eager = new Algorithm1(4, 42, "SplittableRandom", Algorithm1.Evaporation.EAGER).run(instance, stopCondition);
+        Solution lazy = new Algorithm1(4, 42, "SplittableRandom", Algorithm1.Evaporation.LAZY).run(instance, stopCondition);
+        Assertions.assertArrayEquals(eager.routes(), lazy.routes());
+    }
+
+    @Test
+    public void testMaxMin() {
+        AlgorithmGeneralTest.generalTest(
+                "src/main/resources/instances",
+                new Algorithm1(4, 42, "SplittableRandom", Algorithm1.Evaporation.LAZY, Algorithm1.Variant.MAX_MIN),
+                60
+        );
+    }
 }
@@ -1,6 +1,17 @@
 import es.urjc.grafo.ABII.Algorithms.Algorithm;
 import es.urjc.grafo.ABII.Algorithms.Algorithm2;
+import es.urjc.grafo.ABII.Algorithms.StopCondition;
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
 
 
 public class Algorithm2Test {
@@ -15,4 +26,50 @@ public class Algorithm2Test {
                 60
         );
     }
+
+    @Test
+    public void testParallelReproducibility() {
+        Instance instance = new Instance("src/main/resources/instances/instancia_02.txt");
+        Solution sequential = new Algorithm2(1, 42).run(instance);
+        Solution parallel = new Algorithm2(4, 42).run(instance);
+        Assertions.assertArrayEquals(sequential.routes(), parallel.routes());
+    }
+
+    @Test
+    public void testInfeasibleInstance(@TempDir Path folder) throws IOException {
+        // A customer demands more than a vehicle carries, so no individual can ever be repaired
+        Path infeasible = folder.resolve("infeasible.txt");
+        Files.writeString(infeasible, Files.readString(Path.of("src/main/resources/instances/instancia_02.txt"))
+                .replace("\n2 125\n", "\n2 5000\n"));
+        Instance instance = new Instance(infeasible.toString());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Algorithm2(1, 42).run(instance, StopCondition.iterations(1)));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Algorithm2(2, 42, "SplittableRandom", 2, Algorithm2.Topology.RING, 5)
+                        .run(instance, StopCondition.iterations(1)));
+    }
+
+    @Test
+    public void testIslands() {
+        Instance instance = new Instance("src/main/resources/instances/instancia_04.txt");
+        for (Algorithm2.Topology topology : Algorithm2.Topology.values()) {
+            // More islands than threads, so that they take turns
+            Solution solution = new Algorithm2(2, 42, "SplittableRandom", 4, topology, 5)
+                    .run(instance, StopCondition.iterations(50));
+            Assertions.assertTrue(Evaluator.isFeasible(solution, instance), topology.name());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Algorithm2(1, 42, "SplittableRandom", 0, Algorithm2.Topology.RING, 5));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new Algorithm2(1, 42, "SplittableRandom", 4, Algorithm2.Topology.RING, 0));
+
+        // Interrupted before any island is generated, so there is no solution to return
+        Algorithm2 islands = new Algorithm2(2, 42, "SplittableRandom", 4, Algorithm2.Topology.RING, 5);
+        Thread.currentThread().interrupt();
+        try {
+            Assertions.assertThrows(CancellationException.class, () -> islands.run(instance, StopCondition.iterations(50)));
+        } finally {
+            Thread.interrupted();
+        }
+    }
 }
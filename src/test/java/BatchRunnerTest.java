@@ -0,0 +1,60 @@
+import es.urjc.grafo.ABII.Algorithms.Algorithm1;
+import es.urjc.grafo.ABII.Algorithms.BatchRunner;
+import es.urjc.grafo.ABII.Algorithms.StopCondition;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class BatchRunnerTest {
+
+    private final BatchRunner.Format[] formats = BatchRunner.Format.values();
+
+    private List<BatchRunner.Result> run(List<Path> instances, BatchRunner.Format format, StringBuilder out) throws InterruptedException {
+        BatchRunner runner = new BatchRunner(() -> new Algorithm1(1, 42), 2, StopCondition.iterations(2), format);
+        return runner.run(instances, out);
+    }
+
+    @Test
+    public void testDirectory() throws InterruptedException {
+        List<Path> instances = BatchRunner.listInstances(List.of(Path.of("src/main/resources/instances")));
+        Assertions.assertEquals(3, instances.size());
+        for (BatchRunner.Format format : formats) {
+            StringBuilder out = new StringBuilder();
+            List<BatchRunner.Result> results = this.run(instances, format, out);
+            Assertions.assertEquals(3, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                BatchRunner.Result result = results.get(i);
+                Assertions.assertEquals(instances.get(i).getFileName().toString(), result.instance());
+                Assertions.assertTrue(result.feasible(), result.toString());
+                Assertions.assertNull(result.error());
+                Assertions.assertTrue(Double.isFinite(result.cost()));
+            }
+            String[] lines = out.toString().split(System.lineSeparator());
+            if (format == BatchRunner.Format.CSV) {
+                Assertions.assertEquals("instance,cost,gap,feasible,runtime_ms,error", lines[0]);
+                Assertions.assertEquals(4, lines.length);
+            } else {
+                Assertions.assertEquals(3, lines.length);
+                for (String line : lines) {
+                    Assertions.assertTrue(line.startsWith("{\"instance\":\"instancia_0") && line.contains("\"feasible\":true"), line);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMissingInstance() throws InterruptedException {
+        List<Path> instances = new ArrayList<>(List.of(Path.of("src/main/resources/instances/instancia_02.txt"),
+                Path.of("src/main/resources/instances/missing.txt")));
+        StringBuilder out = new StringBuilder();
+        List<BatchRunner.Result> results = this.run(instances, BatchRunner.Format.JSON_LINES, out);
+        Assertions.assertNull(results.get(0).error());
+        Assertions.assertFalse(results.get(1).feasible());
+        Assertions.assertNotNull(results.get(1).error());
+        Assertions.assertTrue(out.toString().contains("{\"instance\":\"missing.txt\",\"cost\":null,\"gap\":null,\"feasible\":false"));
+    }
+}
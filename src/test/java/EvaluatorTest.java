@@ -0,0 +1,224 @@
+import es.urjc.grafo.ABII.Algorithms.Algorithm1;
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.FeasibilityReport;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.MoveDelta;
+import es.urjc.grafo.ABII.Model.PackedSolution;
+import es.urjc.grafo.ABII.Model.RouteState;
+import es.urjc.grafo.ABII.Model.Solution;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+public class EvaluatorTest {
+
+    private final Instance instance = new Instance("src/main/resources/instances/instancia_04.txt");
+
+    // Builds a solution assigning the customers to the vehicles in turns (not necessarily feasible)
+    private Solution roundRobinSolution() {
+        List<Integer>[] routes = new ArrayList[instance.getNumberOfVehicles()];
+        for (int r = 0; r < routes.length; r++) {
+            routes[r] = new ArrayList<>();
+            routes[r].add(1);
+        }
+        for (int c = 2; c <= instance.getNumberOfCustomers(); c++) {
+            routes[c % routes.length].add(c);
+        }
+        for (List<Integer> route : routes) {
+            route.add(1);
+        }
+        return new Solution(routes);
+    }
+
+    @Test
+    public void testPackedSolution() {
+        Solution solution = roundRobinSolution();
+        PackedSolution packed = PackedSolution.of(solution);
+        Assertions.assertEquals(solution.routes().length, packed.getNumberOfRoutes());
+        for (int r = 0; r < packed.getNumberOfRoutes(); r++) {
+            Assertions.assertEquals(solution.routes()[r], packed.toSolution().routes()[r]);
+        }
+        Assertions.assertEquals(Evaluator.evaluate(solution, instance), Evaluator.evaluate(packed, instance), 1e-9);
+        PackedSolution copy = packed.copy();
+        copy.tour()[1] = -1;
+        Assertions.assertNotEquals(-1, packed.get(1));
+    }
+
+    // Packs the routes of a solution after applying "move" to a copy of its flattened giant tour
+    private interface Move {
+        void apply(List<List<Integer>> routes, int[] route, int[] index);
+    }
+
+    private void checkMoves(Solution solution, String name, Move move, MoveDelta delta, RouteState state) {
+        PackedSolution packed = state.getSolution();
+        List<List<Integer>> routes = new ArrayList<>();
+        for (List<Integer> r : solution.routes()) routes.add(new ArrayList<>(r));
+        int[] route = new int[packed.size()];
+        int[] index = new int[packed.size()];
+        for (int r = 0; r < packed.getNumberOfRoutes(); r++) {
+            for (int p = packed.routeStart(r); p < packed.routeEnd(r); p++) {
+                route[p] = r;
+                index[p] = p - packed.routeStart(r);
+            }
+        }
+        move.apply(routes, route, index);
+        Solution moved = new Solution(routes.toArray(new List[0]));
+        Assertions.assertEquals(Evaluator.evaluate(moved, instance) - Evaluator.evaluate(solution, instance), delta.distance(), 1e-6, name);
+        boolean[] feasible = feasibility(routes);
+        Assertions.assertEquals(feasible[0], delta.loadFeasible(), name + " load");
+        Assertions.assertEquals(feasible[1], delta.batteryFeasible(), name + " battery");
+    }
+
+    // Returns whether the routes respect the carrying capacity and the battery (also on the way to charge stations)
+    private boolean[] feasibility(List<List<Integer>> routes) {
+        boolean load = true;
+        boolean battery = true;
+        for (List<Integer> r : routes) {
+            double demand = 0;
+            double energy = 0;
+            for (int i = 0; i < r.size(); i++) {
+                demand += instance.getDemand(r.get(i));
+                if (i > 0) energy += instance.getBatteryConsumption(r.get(i - 1), r.get(i));
+                if (energy > instance.getBatteryCapacity()) battery = false;
+                if (instance.isChargeStation(r.get(i))) energy = 0;
+            }
+            if (demand > instance.getCarryingCapacity()) load = false;
+        }
+        return new boolean[]{load, battery};
+    }
+
+    @Test
+    public void testMoveDeltas() {
+        Solution solution = new Algorithm1().run(instance);
+        boolean[] feasible = feasibility(List.of(solution.routes()));
+        // Move deltas only check the stretches they modify
+        Assumptions.assumeTrue(feasible[0] && feasible[1]);
+        PackedSolution packed = PackedSolution.of(solution);
+        RouteState state = new RouteState(packed, instance);
+        int size = packed.size();
+        for (int p = 1; p < size - 1; p++) {
+            int rp = state.getRoute(p);
+            boolean interiorP = p > packed.routeStart(rp) && p < packed.routeEnd(rp) - 1;
+            if (interiorP) {
+                int fp = p;
+                checkMoves(solution, "remove " + p, (routes, route, index) ->
+                        routes.get(route[fp]).remove(index[fp]), Evaluator.removeDelta(state, p), state);
+            }
+            for (int q = 1; q < size - 1; q++) {
+                int rq = state.getRoute(q);
+                boolean interiorQ = q > packed.routeStart(rq) && q < packed.routeEnd(rq) - 1;
+                int fp = p;
+                int fq = q;
+                if (interiorP && interiorQ && p < q) {
+                    checkMoves(solution, "swap " + p + " " + q, (routes, route, index) -> {
+                        int a = routes.get(route[fp]).get(index[fp]);
+                        routes.get(route[fp]).set(index[fp], routes.get(route[fq]).get(index[fq]));
+                        routes.get(route[fq]).set(index[fq], a);
+                    }, Evaluator.swapDelta(state, p, q), state);
+                }
+                if (interiorP && q != p && q != p - 1 && q < packed.routeEnd(rq) - 1) {
+                    checkMoves(solution, "relocate " + p + " " + q, (routes, route, index) -> {
+                        List<Integer> target = routes.get(route[fq]);
+                        Integer marker = -1;
+                        target.add(index[fq] + 1, marker);
+                        int node = routes.get(route[fp]).remove(index[fp] + (route[fp] == route[fq] && fq < fp ? 1 : 0));
+                        target.set(target.indexOf(marker), node);
+                    }, Evaluator.relocateDelta(state, p, q), state);
+                }
+                if (rp == rq && p < q && q < packed.routeEnd(rq) - 1) {
+                    checkMoves(solution, "2-opt " + p + " " + q, (routes, route, index) ->
+                            Collections.reverse(routes.get(route[fp]).subList(index[fp] + 1, index[fq] + 1)),
+                            Evaluator.twoOptDelta(state, p, q), state);
+                }
+                if (rp != rq && p < packed.routeEnd(rp) - 1 && q < packed.routeEnd(rq) - 1) {
+                    checkMoves(solution, "2-opt* " + p + " " + q, (routes, route, index) -> {
+                        List<Integer> a = routes.get(route[fp]);
+                        List<Integer> b = routes.get(route[fq]);
+                        List<Integer> tailA = new ArrayList<>(a.subList(index[fp] + 1, a.size()));
+                        List<Integer> tailB = new ArrayList<>(b.subList(index[fq] + 1, b.size()));
+                        a.subList(index[fp] + 1, a.size()).clear();
+                        b.subList(index[fq] + 1, b.size()).clear();
+                        a.addAll(tailB);
+                        b.addAll(tailA);
+                    }, Evaluator.twoOptStarDelta(state, p, q), state);
+                }
+                for (int lp = 0; lp <= 2; lp++) {
+                    for (int lq = 0; lq <= 2; lq++) {
+                        if (rp == rq || lp + lq == 0 || p == packed.routeStart(rp) || q == packed.routeStart(rq)
+                                || p + lp > packed.routeEnd(rp) - 1 || q + lq > packed.routeEnd(rq) - 1) continue;
+                        int flp = lp;
+                        int flq = lq;
+                        checkMoves(solution, "cross " + p + " " + lp + " " + q + " " + lq, (routes, route, index) -> {
+                            List<Integer> a = routes.get(route[fp]);
+                            List<Integer> b = routes.get(route[fq]);
+                            List<Integer> segmentA = new ArrayList<>(a.subList(index[fp], index[fp] + flp));
+                            List<Integer> segmentB = new ArrayList<>(b.subList(index[fq], index[fq] + flq));
+                            a.subList(index[fp], index[fp] + flp).clear();
+                            a.addAll(index[fp], segmentB);
+                            b.subList(index[fq], index[fq] + flq).clear();
+                            b.addAll(index[fq], segmentA);
+                        }, Evaluator.crossExchangeDelta(state, p, lp, q, lq), state);
+                    }
+                }
+                for (int length = 1; length <= 3; length++) {
+                    int last = p + length - 1;
+                    if (!interiorP || last >= packed.routeEnd(rp) - 1 || (q >= p - 1 && q <= last) || q >= packed.routeEnd(rq) - 1) continue;
+                    int flength = length;
+                    checkMoves(solution, "or-opt " + p + " " + length + " " + q, (routes, route, index) -> {
+                        List<Integer> target = routes.get(route[fq]);
+                        Integer marker = -1;
+                        target.add(index[fq] + 1, marker);
+                        int from = index[fp] + (route[fp] == route[fq] && fq < fp ? 1 : 0);
+                        List<Integer> segment = routes.get(route[fp]).subList(from, from + flength);
+                        List<Integer> moved = new ArrayList<>(segment);
+                        segment.clear();
+                        int at = target.indexOf(marker);
+                        target.remove(at);
+                        target.addAll(at, moved);
+                    }, Evaluator.orOptDelta(state, p, length, q), state);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFeasibilityReport() {
+        Solution solution = new Algorithm1().run(instance);
+        Assertions.assertTrue(Evaluator.isFeasible(solution, instance));
+        Assertions.assertTrue(Evaluator.isFeasible(PackedSolution.of(solution), instance));
+        Assertions.assertTrue(Evaluator.checkFeasibility(solution, instance).isFeasible());
+
+        List<Integer>[] routes = new List[solution.routes().length];
+        for (int r = 0; r < routes.length; r++) routes[r] = new ArrayList<>(solution.routes()[r]);
+        Solution modified = new Solution(routes);
+        int customer = routes[0].get(1);
+        routes[0].add(routes[0].size() - 1, customer);
+        FeasibilityReport report = Evaluator.checkFeasibility(modified, instance);
+        Assertions.assertEquals(FeasibilityReport.Violation.DUPLICATE_CUSTOMER, report.violation());
+        Assertions.assertEquals(0, report.route());
+        Assertions.assertEquals(routes[0].size() - 2, report.position());
+        Assertions.assertFalse(Evaluator.isFeasible(modified, instance));
+
+        routes[0].remove(routes[0].size() - 2);
+        routes[0].remove(1);
+        report = Evaluator.checkFeasibility(PackedSolution.of(modified), instance);
+        Assertions.assertEquals(FeasibilityReport.Violation.UNSERVED_CUSTOMER, report.violation());
+        Assertions.assertEquals(customer, report.node());
+
+        report = Evaluator.checkFeasibility(roundRobinSolution(), instance);
+        if (report.violation() == FeasibilityReport.Violation.CAPACITY) {
+            Assertions.assertTrue(report.loadExcess() > 0);
+        } else {
+            Assertions.assertEquals(FeasibilityReport.Violation.BATTERY, report.violation());
+            Assertions.assertTrue(report.batteryExcess() > 0);
+        }
+
+        report = Evaluator.checkFeasibility(new Solution(new List[]{List.of(1, 1)}), instance);
+        Assertions.assertEquals(FeasibilityReport.Violation.ROUTE_COUNT, report.violation());
+    }
+}
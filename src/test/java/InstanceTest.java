@@ -0,0 +1,149 @@
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.InstanceCache;
+import es.urjc.grafo.ABII.Model.NeighbourLists;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+
+public class InstanceTest {
+
+    private static final String INSTANCE_PATH = "src/main/resources/instances/instancia_04.txt";
+
+    @Test
+    public void testPrecomputedMatrices() {
+        Instance precomputed = new Instance(INSTANCE_PATH, true);
+        Instance onTheFly = new Instance(INSTANCE_PATH, false);
+        Assertions.assertTrue(precomputed.hasPrecomputedMatrices());
+        Assertions.assertFalse(onTheFly.hasPrecomputedMatrices());
+        for (int i = 1; i <= precomputed.getNumberOfNodes(); i++) {
+            for (int j = 1; j <= precomputed.getNumberOfNodes(); j++) {
+                Assertions.assertEquals(onTheFly.getDistance(i, j), precomputed.getDistance(i, j));
+                Assertions.assertEquals(onTheFly.getBatteryConsumption(i, j), precomputed.getBatteryConsumption(i, j));
+            }
+        }
+    }
+
+    @Test
+    public void testChargeStationTables() {
+        Instance instance = new Instance(INSTANCE_PATH);
+        for (int i = 1; i <= instance.getNumberOfNodes(); i++) {
+            double closestDistance = Double.POSITIVE_INFINITY;
+            for (int cs : instance.getChargeStations()) {
+                closestDistance = Math.min(closestDistance, instance.getDistance(i, cs));
+            }
+            int closest = instance.getClosestChargeStation(i);
+            Assertions.assertTrue(instance.isChargeStation(closest));
+            Assertions.assertEquals(closestDistance, instance.getDistance(i, closest));
+            Assertions.assertEquals(closestDistance, instance.getClosestChargeStationDistance(i));
+            for (int j = 1; j <= instance.getNumberOfNodes(); j++) {
+                double bestDetour = Double.POSITIVE_INFINITY;
+                for (int cs : instance.getChargeStations()) {
+                    bestDetour = Math.min(bestDetour, instance.getDistance(i, cs) + instance.getDistance(cs, j));
+                }
+                int best = instance.getBestChargeStationBetween(i, j);
+                Assertions.assertEquals(bestDetour, instance.getDistance(i, best) + instance.getDistance(best, j));
+            }
+        }
+    }
+
+    @Test
+    public void testNearestCustomers() {
+        Instance instance = new Instance(INSTANCE_PATH);
+        for (int k : new int[]{1, 5, instance.getNumberOfCustomers()}) {
+            NeighbourLists lists = instance.getNearestCustomers(k);
+            Assertions.assertSame(lists, instance.getNearestCustomers(k));
+            for (int i = 1; i <= instance.getNumberOfNodes(); i++) {
+                // Customers other than the base and "i", sorted by distance and then by id
+                int node = i;
+                int[] expected = IntStream.rangeClosed(2, instance.getNumberOfCustomers())
+                        .filter(c -> c != node).boxed()
+                        .sorted(Comparator.comparingDouble((Integer c) -> instance.getDistance(node, c)))
+                        .limit(k).mapToInt(Integer::intValue).toArray();
+                Assertions.assertEquals(expected.length, lists.size(i));
+                for (int rank = 0; rank < expected.length; rank++) {
+                    Assertions.assertEquals(expected[rank], lists.get(i, rank));
+                }
+            }
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> instance.getNearestCustomers(0));
+    }
+
+    @Test
+    public void testParser() {
+        Instance instance = new Instance(INSTANCE_PATH);
+        Assertions.assertEquals(4, instance.getNumberOfVehicles());
+        Assertions.assertEquals(33, instance.getNumberOfCustomers());
+        Assertions.assertEquals(39, instance.getNumberOfNodes());
+        Assertions.assertEquals(7, instance.getNumberOfChargeStations());
+        Assertions.assertTrue(instance.isChargeStation(1));
+        Assertions.assertFalse(instance.isChargeStation(2));
+        Assertions.assertEquals(0, instance.getDemand(1));
+    }
+
+    @Test
+    public void testCacheRoundTrip(@TempDir Path folder) {
+        Instance instance = new Instance(INSTANCE_PATH);
+        for (boolean includeMatrices : new boolean[]{false, true}) {
+            Path cache = folder.resolve("instance_" + includeMatrices + ".bin");
+            InstanceCache.write(instance, cache, includeMatrices);
+            Instance cached = new Instance(cache.toString(), includeMatrices);
+            Assertions.assertEquals(includeMatrices, cached.hasPrecomputedMatrices());
+            // Stored matrices are ignored when the matrices are disabled
+            Assertions.assertFalse(new Instance(cache.toString(), false).hasPrecomputedMatrices());
+            Assertions.assertEquals(instance.getOptimumValue(), cached.getOptimumValue());
+            Assertions.assertEquals(instance.getCarryingCapacity(), cached.getCarryingCapacity());
+            Assertions.assertEquals(instance.getBatteryCapacity(), cached.getBatteryCapacity());
+            Assertions.assertEquals(instance.getH(), cached.getH());
+            Assertions.assertEquals(instance.getChargeStations(), cached.getChargeStations());
+            for (int i = 1; i <= instance.getNumberOfNodes(); i++) {
+                Assertions.assertEquals(instance.getDemand(i), cached.getDemand(i));
+                Assertions.assertEquals(instance.getClosestChargeStation(i), cached.getClosestChargeStation(i));
+                for (int j = 1; j <= instance.getNumberOfNodes(); j++) {
+                    Assertions.assertEquals(instance.getDistance(i, j), cached.getDistance(i, j));
+                    Assertions.assertEquals(instance.getBestChargeStationBetween(i, j), cached.getBestChargeStationBetween(i, j));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidInput(@TempDir Path folder) throws IOException {
+        Assertions.assertThrows(UncheckedIOException.class, () -> new Instance(folder.resolve("missing.txt").toString()));
+        Path malformed = folder.resolve("malformed.txt");
+        Files.writeString(malformed, Files.readString(Path.of(INSTANCE_PATH)).replace("DIMENSION: 33", "DIMENSION: x"));
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> new Instance(malformed.toString()));
+        Assertions.assertTrue(e.getMessage().contains(":3:"), e.getMessage());
+
+        Path duplicated = folder.resolve("duplicated.txt");
+        Files.writeString(duplicated, Files.readString(Path.of(INSTANCE_PATH)).replace("\n3 400\n", "\n2 400\n"));
+        e = Assertions.assertThrows(IllegalArgumentException.class, () -> new Instance(duplicated.toString()));
+        Assertions.assertTrue(e.getMessage().contains("duplicated demand for customer 2"), e.getMessage());
+        Path missing = folder.resolve("missing-demand.txt");
+        Files.writeString(missing, Files.readString(Path.of(INSTANCE_PATH)).replace("\n33 1100\n", "\n"));
+        e = Assertions.assertThrows(IllegalArgumentException.class, () -> new Instance(missing.toString()));
+        Assertions.assertTrue(e.getMessage().contains("expected demands for 33 customers but found 32"), e.getMessage());
+
+        // Dense matrices of more than 46,340 nodes do not fit in an array
+        int nodes = 46341;
+        StringBuilder text = new StringBuilder("VALOR_OPTIMO: 0\nNUM_VEHICULOS: 1\nDIMENSION: " + (nodes - 1)
+                + "\nESTACIONES_CARGA: 1\nCAPACIDAD_CARGA_VE: 1\nCAPACIDAD_BATERIA_VE: 1\nFACTOR_CONSUMO_ENERGIA: 1\n");
+        text.append("SECCION_COORD_NODOS\n");
+        for (int i = 1; i <= nodes; i++) text.append(i).append(' ').append(i).append(" 0\n");
+        text.append("SECCION_DEMANDA\n");
+        for (int i = 1; i < nodes; i++) text.append(i).append(" 0\n");
+        text.append("ID_NODOS_ESTACIONES_CARGA\n").append(nodes).append('\n');
+        Path large = folder.resolve("large.txt");
+        Files.writeString(large, text);
+        e = Assertions.assertThrows(IllegalArgumentException.class, () -> new Instance(large.toString(), true));
+        Assertions.assertTrue(e.getMessage().contains("46341 nodes"), e.getMessage());
+        Assertions.assertFalse(new Instance(large.toString()).hasPrecomputedMatrices());
+    }
+}
@@ -0,0 +1,70 @@
+import es.urjc.grafo.ABII.Algorithms.Algorithm1;
+import es.urjc.grafo.ABII.Algorithms.LocalSearch;
+import es.urjc.grafo.ABII.Algorithms.StopCondition;
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.PackedSolution;
+import es.urjc.grafo.ABII.Model.RouteState;
+import es.urjc.grafo.ABII.Model.Solution;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.SplittableRandom;
+
+
+public class LocalSearchTest {
+
+    private final Instance instance = new Instance("src/main/resources/instances/instancia_04.txt");
+
+    // Worsens a feasible solution with random feasible swaps
+    private Solution perturbedSolution(long seed) {
+        Solution solution = new Algorithm1(1, seed).run(instance, StopCondition.iterations(1));
+        Assertions.assertTrue(Evaluator.isFeasible(solution, instance));
+        PackedSolution packed = PackedSolution.of(solution);
+        RouteState state = new RouteState(packed, instance);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int swaps = 0; swaps < 50; ) {
+            int p = random.nextInt(1, packed.size() - 1);
+            int q = random.nextInt(1, packed.size() - 1);
+            if (p == q || p == packed.routeStart(state.getRoute(p)) || q == packed.routeStart(state.getRoute(q))
+                    || p == packed.routeEnd(state.getRoute(p)) - 1 || q == packed.routeEnd(state.getRoute(q)) - 1
+                    || !Evaluator.swapDelta(state, p, q).isFeasible()) continue;
+            int aux = packed.tour()[p];
+            packed.tour()[p] = packed.tour()[q];
+            packed.tour()[q] = aux;
+            state.update();
+            swaps++;
+        }
+        Solution perturbed = packed.toSolution();
+        Assertions.assertTrue(Evaluator.isFeasible(perturbed, instance));
+        return perturbed;
+    }
+
+    @Test
+    public void testImprove() {
+        Solution solution = perturbedSolution(42);
+        double cost = Evaluator.evaluate(solution, instance);
+        Solution improved = new LocalSearch(instance).improve(solution);
+        Assertions.assertTrue(Evaluator.isFeasible(improved, instance));
+        Assertions.assertTrue(Evaluator.evaluate(improved, instance) < cost);
+    }
+
+    @Test
+    public void testSingleMoves() {
+        Solution solution = perturbedSolution(7);
+        double cost = Evaluator.evaluate(solution, instance);
+        for (LocalSearch.Move move : LocalSearch.Move.values()) {
+            Solution improved = new LocalSearch(instance, 10, EnumSet.of(move)).improve(solution);
+            Assertions.assertTrue(Evaluator.isFeasible(improved, instance), move.name());
+            Assertions.assertTrue(Evaluator.evaluate(improved, instance) <= cost, move.name());
+        }
+    }
+
+    @Test
+    public void testInfeasibleSolution() {
+        Solution solution = perturbedSolution(3);
+        solution.routes()[0].remove(1);
+        Assertions.assertSame(solution, new LocalSearch(instance).improve(solution));
+    }
+}
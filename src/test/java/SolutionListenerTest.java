@@ -0,0 +1,81 @@
+import es.urjc.grafo.ABII.Algorithms.Algorithm;
+import es.urjc.grafo.ABII.Algorithms.Algorithm1;
+import es.urjc.grafo.ABII.Algorithms.Algorithm2;
+import es.urjc.grafo.ABII.Algorithms.SolutionListener;
+import es.urjc.grafo.ABII.Algorithms.StopCondition;
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+public class SolutionListenerTest {
+
+    Instance instance = new Instance("src/main/resources/instances/instancia_04.txt");
+
+    @Test
+    public void testImprovements() {
+        List<SolutionListener.Improvement> improvements = new ArrayList<>();
+        Solution solution = new Algorithm1(1, 42).run(instance, StopCondition.iterations(100), improvements::add);
+        Assertions.assertFalse(improvements.isEmpty());
+        for (int i = 1; i < improvements.size(); i++) {
+            Assertions.assertTrue(improvements.get(i).cost() < improvements.get(i - 1).cost());
+            Assertions.assertTrue(improvements.get(i).iteration() > improvements.get(i - 1).iteration());
+        }
+        SolutionListener.Improvement last = improvements.getLast();
+        Assertions.assertSame(solution, last.solution());
+        Assertions.assertEquals(Evaluator.evaluate(solution, instance), last.cost());
+        Assertions.assertEquals(Evaluator.isFeasible(solution, instance), last.feasible());
+    }
+
+    @Test
+    public void testUnsupported() {
+        // Algorithms written before stop conditions only implement the default run
+        Algorithm algorithm = new Algorithm() {
+            @Override
+            public Solution run(Instance instance) {
+                return new Algorithm1(1, 42).run(instance);
+            }
+        };
+        UnsupportedOperationException e = Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> algorithm.run(instance, StopCondition.iterations(1)));
+        Assertions.assertTrue(e.getMessage().contains(algorithm.getClass().getName()), e.getMessage());
+    }
+
+    @Test
+    public void testCancellation() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<SolutionListener.Improvement> improvements = new ArrayList<>();
+        StopCondition stopCondition = StopCondition.iterations(1_000_000).withCancellation(cancelled::get);
+        Solution solution = new Algorithm2(2, 42).run(instance, stopCondition, improvement -> {
+            improvements.add(improvement);
+            cancelled.set(true);
+        });
+        // The initial population is reported before the first generation, which is never run
+        Assertions.assertEquals(1, improvements.size());
+        Assertions.assertEquals(0, improvements.getFirst().iteration());
+        Assertions.assertTrue(Evaluator.isFeasible(solution, instance));
+    }
+
+    @Test
+    public void testInterruption() throws Exception {
+        ExecutorService supervisor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            Future<Solution> run = supervisor.submit(() -> new Algorithm1(2, 42).run(instance,
+                    StopCondition.iterations(1_000_000), improvement -> started.countDown()));
+            Assertions.assertTrue(started.await(30, TimeUnit.SECONDS));
+            supervisor.shutdownNow();
+            Solution solution = run.get(30, TimeUnit.SECONDS);
+            Assertions.assertNotNull(solution);
+        } finally {
+            supervisor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+import es.urjc.grafo.ABII.Algorithms.Algorithm1;
+import es.urjc.grafo.ABII.Algorithms.Algorithm2;
+import es.urjc.grafo.ABII.Algorithms.StopCondition;
+import es.urjc.grafo.ABII.Model.Evaluator;
+import es.urjc.grafo.ABII.Model.Instance;
+import es.urjc.grafo.ABII.Model.Solution;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+
+public class StopConditionTest {
+
+    Instance instance = new Instance("src/main/resources/instances/instancia_04.txt");
+
+    @Test
+    public void testTracker() {
+        StopCondition.Tracker tracker = StopCondition.iterations(10).withEvaluations(100).withStagnation(3).start(instance);
+        Assertions.assertFalse(tracker.isDone());
+        tracker.iterationDone(1000);
+        tracker.iterationDone(990);
+        tracker.iterationDone(990);
+        tracker.iterationDone(995);
+        Assertions.assertFalse(tracker.isDone());
+        tracker.iterationDone(990);
+        Assertions.assertTrue(tracker.isDone(), "Three iterations without improvement");
+
+        tracker = StopCondition.iterations(10).withEvaluations(100).start(instance);
+        tracker.addEvaluations(99);
+        Assertions.assertFalse(tracker.isDone());
+        tracker.addEvaluations(1);
+        Assertions.assertTrue(tracker.isDone());
+
+        tracker = StopCondition.iterations(10).withTargetGap(0.1).start(instance);
+        tracker.iterationDone(instance.getOptimumValue() * 1.2);
+        Assertions.assertFalse(tracker.isDone());
+        tracker.iterationDone(instance.getOptimumValue() * 1.05);
+        Assertions.assertTrue(tracker.isDone());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> StopCondition.iterations(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> StopCondition.timeLimit(Duration.ZERO));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> StopCondition.iterations(1).withTargetGap(-1));
+    }
+
+    @Test
+    public void testIterationsMatchDefault() {
+        Solution byDefault = new Algorithm1(1, 42).run(instance);
+        Solution bounded = new Algorithm1(1, 42).run(instance, StopCondition.iterations(100));
+        Assertions.assertArrayEquals(byDefault.routes(), bounded.routes());
+    }
+
+    @Test
+    public void testTimeLimit() {
+        StopCondition stopCondition = StopCondition.timeLimit(Duration.ofMillis(500)).withIterations(Long.MAX_VALUE);
+        Instant t0 = Instant.now();
+        Solution solution = new Algorithm2(1, 42).run(instance, stopCondition);
+        Duration elapsed = Duration.between(t0, Instant.now());
+        Assertions.assertTrue(Evaluator.isFeasible(solution, instance));
+        // The population is built before the first check, so allow for it
+        Assertions.assertTrue(elapsed.compareTo(Duration.ofSeconds(5)) < 0, "Time limit exceeded: " + elapsed);
+    }
+
+    @Test
+    public void testStagnation() {
+        Solution solution = new Algorithm1(1, 42).run(instance, StopCondition.iterations(100_000).withStagnation(5));
+        Assertions.assertTrue(Evaluator.isFeasible(solution, instance));
+    }
+}